@@ -0,0 +1,269 @@
+import java.util.Arrays;
+
+/**
+ * Класс BalanceIndex — дерево порядковых статистик заемщиков по сумме долга.
+ * Ключ узла — пара (сумма, номер), поэтому равные суммы различаются номером.
+ * Дерево — декартово (treap): узлом служит сам номер заемщика, а ссылки, приоритеты
+ * и размеры поддеревьев хранятся в массивах по номеру, без отдельных объектов-узлов.
+ * Вставка, удаление, ранг и k-я статистика выполняются в среднем за O(log n).
+ */
+final class BalanceIndex {
+
+    // Сумма долга заемщика (ключ узла)
+    private double[] balance;
+    // Левый и правый потомок (-1 — нет)
+    private int[] left;
+    private int[] right;
+    // Размер поддерева с корнем в узле
+    private int[] subtree;
+    // Случайный приоритет узла (куча по приоритетам держит дерево сбалансированным)
+    private int[] priority;
+    // true — номер находится в дереве
+    private boolean[] present;
+    // Корень дерева (-1 — дерево пусто)
+    private int root;
+    // Состояние генератора приоритетов
+    private int seed;
+
+    // Результат split: части дерева с ключами меньше и не меньше заданного
+    private int splitLeft;
+    private int splitRight;
+
+    BalanceIndex() {
+        balance = new double[16];
+        left = new int[16];
+        right = new int[16];
+        subtree = new int[16];
+        priority = new int[16];
+        present = new boolean[16];
+        root = -1;
+        seed = 0x9E3779B9;
+    }
+
+    /**
+     * Возвращает количество заемщиков в дереве.
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Проверяет, есть ли заемщик в дереве.
+     */
+    boolean contains(int id) {
+        return id >= 0 && id < present.length && present[id];
+    }
+
+    /**
+     * Добавляет заемщика или обновляет его сумму.
+     * @param id    номер заемщика
+     * @param value сумма долга
+     */
+    void put(int id, double value) {
+        if (contains(id)) {
+            if (Double.compare(balance[id], value) == 0) return;
+            remove(id);
+        }
+        ensureCapacity(id);
+        balance[id] = value;
+        left[id] = -1;
+        right[id] = -1;
+        subtree[id] = 1;
+        priority[id] = nextPriority();
+        present[id] = true;
+        root = insert(root, id);
+    }
+
+    /**
+     * Удаляет заемщика из дерева (если он там есть).
+     * @param id номер заемщика
+     */
+    void remove(int id) {
+        if (!contains(id)) return;
+        root = delete(root, id);
+        present[id] = false;
+    }
+
+    /**
+     * Удаляет всех заемщиков.
+     */
+    void clear() {
+        Arrays.fill(present, false);
+        root = -1;
+    }
+
+    /**
+     * Возвращает количество заемщиков, ключ которых меньше ключа заемщика id.
+     * @param id номер заемщика (должен быть в дереве)
+     * @return число заемщиков с меньшей суммой (при равенстве — с меньшим номером)
+     */
+    int countBelow(int id) {
+        int count = 0;
+        int t = root;
+        while (t != id) {
+            if (less(id, t)) {
+                t = left[t];
+            } else {
+                count += size(left[t]) + 1;
+                t = right[t];
+            }
+        }
+        return count + size(left[id]);
+    }
+
+    /**
+     * Возвращает k-го по возрастанию ключа заемщика (k от 0).
+     * @param k порядковый номер
+     * @return номер заемщика
+     */
+    int select(int k) {
+        int t = root;
+        while (true) {
+            int l = size(left[t]);
+            if (k < l) {
+                t = left[t];
+            } else if (k == l) {
+                return t;
+            } else {
+                k -= l + 1;
+                t = right[t];
+            }
+        }
+    }
+
+    /**
+     * Возвращает номера заемщиков с наибольшими суммами, от большей к меньшей.
+     * Обход идёт справа налево и останавливается после n узлов: O(log n + n).
+     * @param n сколько заемщиков вернуть
+     * @return массив номеров длины min(n, size())
+     */
+    int[] descending(int n) {
+        int[] result = new int[Math.max(Math.min(n, size()), 0)];
+        int[] stack = new int[64];
+        int depth = 0, count = 0;
+        int t = root;
+        while (count < result.length) {
+            while (t >= 0) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = t;
+                t = right[t];
+            }
+            t = stack[--depth];
+            result[count++] = t;
+            t = left[t];
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает сумму долга заемщика, записанную в дереве.
+     */
+    double balanceOf(int id) {
+        return balance[id];
+    }
+
+    /**
+     * Вставляет узел id в поддерево t: спускается по ключу, пока приоритет id не окажется
+     * больше приоритета текущего узла, и там разрезает поддерево на две части.
+     */
+    private int insert(int t, int id) {
+        if (t < 0) return id;
+        if (priority[id] > priority[t]) {
+            split(t, id);
+            left[id] = splitLeft;
+            right[id] = splitRight;
+            update(id);
+            return id;
+        }
+        if (less(id, t)) left[t] = insert(left[t], id);
+        else right[t] = insert(right[t], id);
+        update(t);
+        return t;
+    }
+
+    /**
+     * Удаляет узел id из поддерева t, сливая его потомков.
+     */
+    private int delete(int t, int id) {
+        if (t == id) return merge(left[t], right[t]);
+        if (less(id, t)) left[t] = delete(left[t], id);
+        else right[t] = delete(right[t], id);
+        update(t);
+        return t;
+    }
+
+    /**
+     * Разрезает поддерево t на узлы с ключом меньше ключа id (splitLeft) и остальные (splitRight).
+     */
+    private void split(int t, int id) {
+        if (t < 0) {
+            splitLeft = -1;
+            splitRight = -1;
+            return;
+        }
+        if (less(t, id)) {
+            split(right[t], id);
+            right[t] = splitLeft;
+            update(t);
+            splitLeft = t;
+        } else {
+            split(left[t], id);
+            left[t] = splitRight;
+            update(t);
+            splitRight = t;
+        }
+    }
+
+    /**
+     * Сливает два поддерева, все ключи a меньше всех ключей b.
+     */
+    private int merge(int a, int b) {
+        if (a < 0) return b;
+        if (b < 0) return a;
+        if (priority[a] > priority[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+
+    /**
+     * Сравнивает ключи узлов: сначала сумма, затем номер.
+     */
+    private boolean less(int a, int b) {
+        int c = Double.compare(balance[a], balance[b]);
+        return c < 0 || (c == 0 && a < b);
+    }
+
+    private void update(int t) {
+        subtree[t] = size(left[t]) + size(right[t]) + 1;
+    }
+
+    private int size(int t) {
+        return (t < 0) ? 0 : subtree[t];
+    }
+
+    /**
+     * Следующий псевдослучайный приоритет (xorshift).
+     */
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < present.length) return;
+        int newLength = Math.max(present.length * 2, id + 1);
+        balance = Arrays.copyOf(balance, newLength);
+        left = Arrays.copyOf(left, newLength);
+        right = Arrays.copyOf(right, newLength);
+        subtree = Arrays.copyOf(subtree, newLength);
+        priority = Arrays.copyOf(priority, newLength);
+        present = Arrays.copyOf(present, newLength);
+    }
+}
@@ -2,12 +2,18 @@ import java.time.LocalDate;
 
 public class Borrower {
 
-    private final String lastName;
+    private String lastName;
+    private int nameId = -1;  // Идентификатор фамилии в словаре очереди, в которую заемщик добавлен
+    private int id = -1;  // Номер присваивается очередью при добавлении
     private final PaymentList payments;
+    private BorrowerQueue owner;  // Очередь, в которой находится заемщик (null — вне очереди)
+    private volatile boolean dirty = true; // Изменён после последнего сохранения (меняется под блокировкой очереди)
+    private long queueOrder;      // Ключ порядка в очереди: растёт от начала очереди к концу
 
     public Borrower(String lastName) {
         this.lastName = lastName;
         this.payments = new PaymentList();
+        this.payments.setOwner(this);
     }
 
     public double getLoanAmount() {
@@ -18,6 +24,87 @@ public class Borrower {
         return lastName;
     }
 
+    public int getNameId() {
+        return nameId;
+    }
+
+    /**
+     * Запоминает идентификатор фамилии в словаре очереди и её экземпляр из словаря:
+     * одинаковые фамилии заемщиков очереди хранятся в памяти один раз.
+     */
+    void assignName(int nameId, String lastName) {
+        this.nameId = nameId;
+        this.lastName = lastName;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    void assignId(int id) {
+        this.id = id;
+    }
+
+    long getQueueOrder() {
+        return queueOrder;
+    }
+
+    void setQueueOrder(long queueOrder) {
+        this.queueOrder = queueOrder;
+    }
+
+    BorrowerQueue getOwner() {
+        return owner;
+    }
+
+    void setOwner(BorrowerQueue owner) {
+        this.owner = owner;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Отмечает заемщика изменённым. Заемщика очереди отмечает сама очередь (см. BorrowerQueue.borrowerUpdated):
+     * проверка отметки, запись в журнал и обновление снимка выполняются под её блокировкой одним шагом.
+     */
+    void markDirty() {
+        dirty = true;
+    }
+
+    void markClean() {
+        dirty = false;
+    }
+
+    /**
+     * Вызывается списком платежей после каждого изменения: очередь отмечает заемщика изменённым
+     * и обновляет его состояние в снимках и сводке поступлений.
+     * @param added   добавленный платёж (или null)
+     * @param removed удалённый платёж (или null)
+     */
+    void paymentsChanged(Payment added, Payment removed) {
+        BorrowerQueue queue = owner;
+        if (queue != null) queue.borrowerUpdated(this, added, removed);
+        else markDirty();
+    }
+
+    /**
+     * Вызывается списком платежей после отложенной загрузки из файла: заемщик не изменён,
+     * но состояние в снимках очереди заменяется загруженным.
+     */
+    void paymentsLoaded() {
+        if (owner != null) owner.borrowerUpdated(this, null, null);
+    }
+
+    /**
+     * Возвращает неизменяемое состояние заемщика за O(1).
+     * @return снимок заемщика
+     */
+    public BorrowerSnapshot snapshot() {
+        return new BorrowerSnapshot(id, lastName, nameId, queueOrder, payments.snapshot());
+    }
+
     public void addPayment(Payment p) {
         payments.add(p);
     }
@@ -26,6 +113,10 @@ public class Borrower {
         return payments.remove(date);
     }
 
+    public boolean removePayment(LocalDate date, double amount) {
+        return payments.remove(date, amount);
+    }
+
     public PaymentList getPayments() {
         return payments;
     }
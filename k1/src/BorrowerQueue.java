@@ -1,22 +1,84 @@
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
- * Класс BorrowerQueue — очередь заемщиков на основе массива фиксированной ёмкости.
- * Поддерживает добавление, извлечение, поиск по фамилии, удаление и сериализацию в файл.
+ * Класс BorrowerQueue — очередь заемщиков на основе кольцевого буфера фиксированной ёмкости.
+ * Поддерживает добавление в конец, извлечение из начала (в том числе с ожиданием),
+ * доступ по индексу, поиск по номеру и фамилии, удаление и сериализацию в файл.
+ * Каждый заемщик в очереди получает плотный числовой номер (ID): поиск по номеру выполняется за O(1),
+ * а по фамилии — через вторичный индекс, допускающий несколько заемщиков с одной фамилией.
+ * Все публичные методы синхронизированы по самой очереди, поэтому её можно использовать
+ * как ограниченную очередь задач между потоками-производителями и потоками-обработчиками.
+ * Параллельно с массивом очередь ведёт персистентный индекс состояний заемщиков по номерам:
+ * метод snapshot отдаёт согласованный снимок за O(1), и отчёты или сохранение по нему
+ * не мешают дальнейшим изменениям очереди. Порядок очереди снимок восстанавливает по ключу порядка
+ * заемщика (Borrower.getQueueOrder): ключи растут от начала очереди к концу. Дерево порядковых статистик по сумме долга
+ * отвечает на запросы о крупнейших заемщиках, месте заемщика и процентилях за O(log n).
+ * Сводка поступлений (CashFlowRollup) обновляется при каждом изменении платежей заемщиков
+ * очереди и даёт итоги по дням, месяцам и годам без обхода платежей.
  */
 public class BorrowerQueue {
 
-    // Внутренний массив для хранения заемщиков
+    // Внутренний массив для хранения заемщиков (используется как кольцевой буфер)
     private final Borrower[] array;
+    // Ячейка массива, в которой находится начало очереди (индекс 0)
+    private int head;
     // Текущее количество элементов в очереди
     private int size;
     // Максимальная вместимость очереди (неизменяемая после создания)
     private final int capacity;
 
+    // Словарь фамилий заемщиков очереди (заменяется новым при загрузке из файла)
+    private NameDictionary names = new NameDictionary();
+
+    // Первичный индекс: заемщик по номеру (null — номер свободен или заемщик удалён)
+    private Borrower[] byId;
+    // Следующий свободный номер
+    private int nextId;
+    // Ключ порядка для следующего заемщика в конце очереди
+    private long nextOrder;
+    // Вторичный индекс по фамилии: номер последнего добавленного заемщика с данной фамилией (-1 — нет)
+    private int[] nameHead;
+    // Цепочки заемщиков с одинаковой фамилией: номер предыдущего добавленного (-1 — конец цепочки)
+    private int[] nextSameName;
+    // Индекс позиций: ячейка массива заемщика по его номеру (действителен, пока byId[id] != null)
+    private int[] posById;
+
+    // Журнал изменений с последнего сохранения: номера добавленных, изменённых и удалённых заемщиков
+    private int[] changedIds;
+    private int changedCount;
+    // true — изменено всё содержимое (загрузка из файла или переполнение журнала)
+    private boolean allChanged;
+
+    // Персистентный индекс состояний заемщиков по номерам (основа снимков)
+    private PersistentIndex<BorrowerSnapshot> states;
+    // Метка узлов индекса, ещё не выданных ни одному снимку (их можно менять на месте)
+    private Object statesEdit;
+    // Номер версии индекса состояний: растёт при каждом его изменении (см. version)
+    private volatile long version;
+    // Глубина вложенных пакетных загрузок: пока она больше 0, состояния не обновляются на каждый платёж
+    private int bulkDepth;
+    // Дерево порядковых статистик по сумме долга (крупнейшие заемщики, ранг, процентили)
+    private final BalanceIndex balances = new BalanceIndex();
+    // Сводка поступлений по дням, месяцам и годам
+    private final CashFlowRollup cashFlow = new CashFlowRollup();
+
+    // Номера, переназначенные при загрузке (см. enqueueLoaded): номер из файла и выданный вместо него.
+    // Выданные номера идут по возрастанию; remapByOld — пары (номер из файла, выданный), упорядоченные
+    // по номеру из файла, строятся при первом поиске
+    private int[] remapOld = new int[0];
+    private int[] remapNew = new int[0];
+    private int remapCount;
+    private long[] remapByOld;
+
     /**
      * Конструктор: создаёт очередь заданной вместимости.
      * @param capacity максимальное число заемщиков, которое может хранить очередь
@@ -24,58 +86,361 @@ public class BorrowerQueue {
     public BorrowerQueue(int capacity) {
         this.capacity = capacity;               // Сохраняем максимально допустимый размер
         this.array = new Borrower[capacity];    // Создаём массив указанного размера
+        this.head = 0;
         this.size = 0;                          // Изначально очередь пуста
+        this.byId = new Borrower[Math.max(capacity, 1)];
+        this.nextSameName = new int[byId.length];
+        this.posById = new int[byId.length];
+        this.nameHead = new int[16];
+        Arrays.fill(nameHead, -1);
+        this.nextId = 0;
+        this.changedIds = new int[16];
+        this.changedCount = 0;
+        this.allChanged = true;
+        this.states = PersistentIndex.empty();
+        this.statesEdit = new Object();
     }
 
     /**
      * Проверяет, пуста ли очередь.
      * @return true, если в очереди нет заемщиков
      */
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return size == 0;  // Очередь пуста, если ни один элемент не добавлен
     }
 
     /**
      * Добавляет заемщика в конец очереди (аналог операции "поставить в очередь").
+     * Если у заемщика ещё нет номера или его номер уже занят в этой очереди,
+     * ему присваивается следующий свободный номер.
      * @param b заемщик для добавления
      * @return true, если добавление успешно; false, если очередь заполнена
+     * @throws IllegalArgumentException если заемщик уже находится в этой или другой очереди
      */
-    public boolean enqueue(Borrower b) {
+    public synchronized boolean enqueue(Borrower b) {
+        return enqueue(b, nextOrder);
+    }
+
+    /**
+     * Добавляет заемщика в конец очереди с заданным ключом порядка.
+     * Ключ должен быть больше ключей всех заемщиков очереди (или очередь потом упорядочивается sortByOrder).
+     */
+    private boolean enqueue(Borrower b, long order) {
+        checkNotQueued(b);
         if (size >= capacity) return false;  // Нельзя добавить, если достигнут лимит
-        array[size++] = b;                   // Добавляем в первую свободную ячейку и увеличиваем счётчик
+        b.setQueueOrder(order);
+        nextOrder = Math.max(nextOrder, order + 1);
+        int id = b.getId();
+        if (id < 0 || (id < byId.length && byId[id] != null)) {
+            id = nextId;
+            b.assignId(id);
+        }
+        int slot = slot(size);
+        array[slot] = b;                     // Добавляем в ячейку сразу за концом очереди
+        indexAdd(b);
+        posById[id] = slot;                  // Запоминаем ячейку
+        size++;                              // и увеличиваем счётчик
+        notifyAll();                         // Будим потоки, ожидающие в take()
         return true;
     }
 
+    /**
+     * Добавляет заемщика в конец очереди, ожидая освобождения места, если очередь заполнена.
+     * @param b заемщик для добавления
+     * @throws InterruptedException если поток был прерван во время ожидания
+     * @throws IllegalArgumentException если заемщик уже находится в этой или другой очереди
+     */
+    public synchronized void put(Borrower b) throws InterruptedException {
+        checkNotQueued(b);
+        while (size >= capacity) {
+            wait();                          // Ждём, пока обработчик не извлечёт заемщика
+        }
+        enqueue(b);
+    }
+
+    /**
+     * Проверяет, что заемщик не стоит ни в одной очереди: иначе новый номер достался бы живой записи,
+     * и индексы ссылались бы на один объект под двумя номерами.
+     */
+    private void checkNotQueued(Borrower b) {
+        if (b.getOwner() != null) {
+            throw new IllegalArgumentException("Заемщик " + b.getLastName() + " (№" + b.getId() + ") уже в очереди");
+        }
+    }
+
+    /**
+     * Извлекает заемщика из начала очереди за O(1) (аналог операции "взять из очереди").
+     * Извлечённый заемщик исключается из индексов по номеру и фамилии.
+     * @return первый заемщик или null, если очередь пуста
+     */
+    public synchronized Borrower dequeue() {
+        if (size == 0) return null;
+        Borrower b = array[head];
+        array[head] = null;                  // Освобождаем ячейку
+        head = (head + 1 == capacity) ? 0 : head + 1;  // Начало сдвигается по кольцу, элементы не двигаются
+        size--;
+        indexRemove(b);
+        notifyAll();                         // Будим потоки, ожидающие места в put()
+        return b;
+    }
+
+    /**
+     * Извлекает заемщика из начала очереди, ожидая его появления, если очередь пуста.
+     * @return первый заемщик
+     * @throws InterruptedException если поток был прерван во время ожидания
+     */
+    public synchronized Borrower take() throws InterruptedException {
+        while (size == 0) {
+            wait();                          // Ждём, пока производитель не добавит заемщика
+        }
+        return dequeue();
+    }
+
+    /**
+     * Извлекает заемщика из начала очереди, ожидая не дольше указанного времени.
+     * @param timeoutMillis максимальное время ожидания в миллисекундах
+     * @return первый заемщик или null, если за отведённое время очередь так и осталась пустой
+     * @throws InterruptedException если поток был прерван во время ожидания
+     */
+    public synchronized Borrower poll(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (size == 0) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return null;
+            wait(left);
+        }
+        return dequeue();
+    }
+
+    /**
+     * Возвращает первого заемщика очереди, не извлекая его.
+     * @return первый заемщик или null, если очередь пуста
+     */
+    public synchronized Borrower peek() {
+        return (size == 0) ? null : array[head];
+    }
+
+    /**
+     * Извлекает из начала очереди пачку заемщиков (например, для очередного обзвона).
+     * @param batch массив, в который помещаются извлечённые заемщики (с индекса 0)
+     * @return количество извлечённых заемщиков (не больше batch.length)
+     */
+    public synchronized int drainTo(Borrower[] batch) {
+        int count = Math.min(batch.length, size);
+        for (int i = 0; i < count; i++) {
+            batch[i] = dequeue();
+        }
+        return count;
+    }
+
+    /**
+     * Переводит индекс в очереди (от начала) в ячейку кольцевого массива.
+     * @param index индекс в очереди (от 0 до capacity-1)
+     * @return номер ячейки массива
+     */
+    private int slot(int index) {
+        int s = head + index;
+        return (s >= capacity) ? s - capacity : s;
+    }
+
+    /**
+     * Переводит ячейку кольцевого массива в индекс в очереди (от начала).
+     */
+    private int indexOfSlot(int slot) {
+        int i = slot - head;
+        return (i < 0) ? i + capacity : i;
+    }
+
     /**
      * Возвращает заемщика по индексу (для внутреннего использования или отладки).
      * @param index индекс в очереди (от 0 до size-1)
      * @return заемщик или null, если индекс некорректен
      */
-    public Borrower getAt(int index) {
+    public synchronized Borrower getAt(int index) {
         if (index < 0 || index >= size) return null;  // Защита от выхода за границы
-        return array[index];
+        return array[slot(index)];
     }
 
     /**
      * Возвращает текущее количество заемщиков в очереди.
      * @return число активных элементов
      */
-    public int getSize() {
+    public synchronized int getSize() {
         return size;  // Просто возвращаем текущий размер
     }
 
     /**
-     * Ищет заемщика по фамилии.
+     * Возвращает копию содержимого очереди в порядке от начала к концу.
+     * Используется для обработки заемщиков без удержания блокировки очереди.
+     * @return массив заемщиков длины size
+     */
+    public synchronized Borrower[] toArray() {
+        Borrower[] result = new Borrower[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = array[slot(i)];
+        }
+        return result;
+    }
+
+    /**
+     * Ищет заемщика по номеру.
+     * @param id номер заемщика
+     * @return найденный заемщик или null, если номер не занят
+     */
+    public synchronized Borrower findById(int id) {
+        if (id < 0 || id >= byId.length) return null;
+        return byId[id];  // Прямое обращение к первичному индексу — O(1)
+    }
+
+    /**
+     * Ищет заемщика по фамилии. Если заемщиков с такой фамилией несколько,
+     * возвращается добавленный раньше всех.
      * @param lastName фамилия для поиска
      * @return найденный заемщик или null, если не найден
      */
-    public Borrower findByLastName(String lastName) {
+    public synchronized Borrower findByLastName(String lastName) {
+        int nameId = names.idOf(lastName);
+        if (nameId < 0 || nameId >= nameHead.length) return null;  // Такой фамилии нет ни у одного заемщика
+
+        // Цепочка идёт от последнего добавленного к первому — берём её конец
+        int id = nameHead[nameId];
+        if (id < 0) return null;
+        while (nextSameName[id] >= 0) {
+            id = nextSameName[id];
+        }
+        return byId[id];
+    }
+
+    /**
+     * Ищет всех заемщиков с указанной фамилией.
+     * @param lastName фамилия для поиска
+     * @return массив заемщиков в порядке добавления (пустой, если не найдено)
+     */
+    public synchronized Borrower[] findAllByLastName(String lastName) {
+        int nameId = names.idOf(lastName);
+        if (nameId < 0 || nameId >= nameHead.length) return new Borrower[0];
+
+        int count = 0;
+        for (int id = nameHead[nameId]; id >= 0; id = nextSameName[id]) count++;
+
+        // Заполняем с конца, чтобы получить порядок добавления
+        Borrower[] result = new Borrower[count];
+        for (int id = nameHead[nameId]; id >= 0; id = nextSameName[id]) {
+            result[--count] = byId[id];
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает позицию заемщика в очереди по его номеру.
+     * @param id номер заемщика
+     * @return позиция (от 0 до size-1) или -1, если номер не занят
+     */
+    public synchronized int positionOf(int id) {
+        if (findById(id) == null) return -1;
+        return indexOfSlot(posById[id]);
+    }
+
+    /**
+     * Удаляет заемщика по номеру с сохранением порядка остальных заемщиков.
+     * Позиция находится по индексу за O(1), а сдвигается меньшая из частей очереди
+     * (до или после удаляемого) — O(min(i, n - i)).
+     * Для массового удаления следует использовать removeIf, для удаления без сдвига — swapRemoveById.
+     * @param id номер заемщика для удаления
+     * @return true, если удаление прошло успешно; false — если заемщик не найден
+     */
+    public synchronized boolean removeById(int id) {
+        Borrower target = findById(id);
+        if (target == null) return false;
+        int i = indexOfSlot(posById[id]);
+        if (i < size / 2) {
+            // Ближе к началу: сдвигаем предшествующие элементы вправо и переносим начало очереди
+            for (int j = i; j > 0; j--) {
+                moveTo(slot(j - 1), slot(j));
+            }
+            array[head] = null;
+            head = (head + 1 == capacity) ? 0 : head + 1;
+        } else {
+            // Ближе к концу: сдвигаем последующие элементы влево
+            for (int j = i; j < size - 1; j++) {
+                moveTo(slot(j + 1), slot(j));  // Перемещаем каждый следующий элемент на одну позицию назад
+            }
+            array[slot(size - 1)] = null;     // Очищаем последнюю ячейку
+        }
+        size--;                               // Уменьшаем счётчик
+        indexRemove(target);
+        notifyAll();
+        return true;                          // Успешно удалено
+    }
+
+    /**
+     * Переносит заемщика из одной ячейки массива в другую, обновляя индекс позиций.
+     */
+    private void moveTo(int from, int to) {
+        Borrower b = array[from];
+        array[to] = b;
+        posById[b.getId()] = to;
+    }
+
+    /**
+     * Удаляет заемщика по номеру за O(1): на его место переносится последний заемщик очереди.
+     * Порядок заемщиков при этом не сохраняется.
+     * @param id номер заемщика для удаления
+     * @return true, если удаление прошло успешно; false — если заемщик не найден
+     */
+    public synchronized boolean swapRemoveById(int id) {
+        Borrower target = findById(id);
+        if (target == null) return false;
+        int lastSlot = slot(size - 1);
+        Borrower last = array[lastSlot];
+        if (last != target) {
+            // Перенесённый заемщик встаёт на место удалённого и в порядке снимков
+            last.setQueueOrder(target.getQueueOrder());
+            putState(last.getId(), last.snapshot());
+            logChange(last.getId());
+        }
+        moveTo(lastSlot, posById[id]);        // Последний заемщик занимает освободившуюся ячейку
+        array[lastSlot] = null;
+        size--;
+        indexRemove(target);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Удаляет всех заемщиков, удовлетворяющих условию, за один проход с уплотнением массива.
+     * Порядок оставшихся заемщиков сохраняется, общая сложность — O(n).
+     * Условие сначала проверяется для всех заемщиков и только затем очередь меняется:
+     * если условие выбросит исключение (или не прочитаются платежи удаляемого), очередь останется прежней.
+     * @param condition условие удаления (например, погашенный кредит)
+     * @return количество удалённых заемщиков
+     */
+    public synchronized int removeIf(Predicate<Borrower> condition) {
+        boolean[] remove = new boolean[size];
         for (int i = 0; i < size; i++) {
-            if (array[i].getLastName().equals(lastName)) {
-                return array[i];  // Нашли — сразу возвращаем
+            Borrower b = array[slot(i)];
+            remove[i] = condition.test(b);
+            // Платежи удаляемого ещё не загруженного заемщика читаются до изменения очереди (см. indexRemove)
+            if (remove[i]) b.getPayments().getHead();
+        }
+        int write = 0;
+        for (int read = 0; read < remove.length; read++) {
+            Borrower b = array[slot(read)];
+            if (remove[read]) {
+                indexRemove(b);               // Удаляемый заемщик исключается из индексов
+            } else {
+                int target = slot(write++);   // Оставшийся переносится на первую свободную позицию
+                array[target] = b;
+                posById[b.getId()] = target;
             }
         }
-        return null;  // Не найдено ни одного совпадения
+        int removed = size - write;
+        for (int i = write; i < size; i++) {
+            array[slot(i)] = null;            // Очищаем освободившийся хвост
+        }
+        size = write;
+        if (removed > 0) notifyAll();
+        return removed;
     }
 
     /**
@@ -83,78 +448,635 @@ public class BorrowerQueue {
      * @param lastName фамилия заемщика для удаления
      * @return true, если удаление прошло успешно; false — если заемщик не найден
      */
-    public boolean removeByLastName(String lastName) {
+    public synchronized boolean removeByLastName(String lastName) {
+        Borrower target = findByLastName(lastName);
+        return target != null && removeById(target.getId());
+    }
+
+    /**
+     * Регистрирует заемщика в первичном индексе и в индексе по фамилии.
+     */
+    private void indexAdd(Borrower b) {
+        int id = b.getId();
+        if (id >= byId.length) {
+            int newLength = Math.max(byId.length * 2, id + 1);
+            byId = Arrays.copyOf(byId, newLength);
+            nextSameName = Arrays.copyOf(nextSameName, newLength);
+            posById = Arrays.copyOf(posById, newLength);
+        }
+        byId[id] = b;
+        nextId = Math.max(nextId, id + 1);
+
+        int nameId = names.intern(b.getLastName());
+        b.assignName(nameId, names.nameOf(nameId));
+        if (nameId >= nameHead.length) {
+            int oldLength = nameHead.length;
+            nameHead = Arrays.copyOf(nameHead, Math.max(oldLength * 2, nameId + 1));
+            Arrays.fill(nameHead, oldLength, nameHead.length, -1);
+        }
+        nextSameName[id] = nameHead[nameId];  // Новый заемщик становится началом цепочки
+        nameHead[nameId] = id;
+
+        for (PaymentNode node = b.getPayments().getHead(); node != null; node = node.getNext()) {
+            cashFlow.add(node.getData().getDate(), node.getData().getAmount());
+        }
+        b.setOwner(this);
+        if (bulkDepth == 0) {  // При пакетной загрузке индексы заполняются в endBulkLoad
+            putState(id, b.snapshot());
+            balances.put(id, b.getLoanAmount());
+        }
+        logChange(id);
+    }
+
+    /**
+     * Исключает заемщика из первичного индекса и из индекса по фамилии.
+     * Номер не переиспользуется до следующей загрузки из файла.
+     */
+    private void indexRemove(Borrower b) {
+        int id = b.getId();
+        // Платежи ещё не загруженного списка читаются из файла, пока заемщик числится в очереди
+        for (PaymentNode node = b.getPayments().getHead(); node != null; node = node.getNext()) {
+            cashFlow.remove(node.getData().getDate(), node.getData().getAmount());
+        }
+        byId[id] = null;
+
+        int nameId = b.getNameId();
+        if (nameHead[nameId] == id) {
+            nameHead[nameId] = nextSameName[id];
+        } else {
+            int prev = nameHead[nameId];
+            while (nextSameName[prev] != id) {
+                prev = nextSameName[prev];
+            }
+            nextSameName[prev] = nextSameName[id];
+        }
+        nextSameName[id] = -1;
+
+        b.setOwner(null);
+        putState(id, null);
+        balances.remove(id);
+        logChange(id);
+    }
+
+    /**
+     * Вызывается заемщиком очереди после каждого изменения его платежей:
+     * отмечает заемщика изменённым, учитывает платёж в сводке поступлений, обновляет состояние
+     * заемщика в индексе снимков и его место в порядке по сумме долга. Отметка и журнал меняются
+     * под той же блокировкой, что и снимок: изменение попадает либо в снимок, забранный drainChanges,
+     * либо в журнал следующего сохранения. В журнал пишется только первое изменение после сохранения,
+     * чтобы он рос пропорционально числу правок, а не платежей.
+     * @param b       изменённый заемщик
+     * @param added   добавленный платёж (или null)
+     * @param removed удалённый платёж (или null)
+     */
+    synchronized void borrowerUpdated(Borrower b, Payment added, Payment removed) {
+        boolean inQueue = b.getId() >= 0 && findById(b.getId()) == b;
+        if (added != null || removed != null) {  // Отложенная загрузка (оба null) не изменяет заемщика
+            if (inQueue && !b.isDirty()) logChange(b.getId());
+            b.markDirty();
+        }
+        if (!inQueue) return;
+        // Сводка ведётся и при пакетной загрузке: обновление корзин стоит O(1)
+        if (added != null) cashFlow.add(added.getDate(), added.getAmount());
+        if (removed != null) cashFlow.remove(removed.getDate(), removed.getAmount());
+        if (bulkDepth == 0) {
+            putState(b.getId(), b.snapshot());
+            balances.put(b.getId(), b.getLoanAmount());
+        }
+    }
+
+    /**
+     * Начинает пакетную загрузку: изменения платежей не обновляют индекс снимков по одному.
+     * Каждому вызову должен соответствовать endBulkLoad (в блоке finally).
+     */
+    synchronized void beginBulkLoad() {
+        bulkDepth++;
+    }
+
+    /**
+     * Завершает пакетную загрузку; по окончании внешней загрузки состояния всех заемщиков
+     * обновляются за один проход.
+     */
+    synchronized void endBulkLoad() {
+        if (--bulkDepth > 0) return;
         for (int i = 0; i < size; i++) {
-            if (array[i].getLastName().equals(lastName)) {
-                // Найден — удаляем сдвигом влево, начиная с позиции i
-                for (int j = i; j < size - 1; j++) {
-                    array[j] = array[j + 1];  // Перемещаем каждый следующий элемент на одну позицию назад
-                }
-                array[size - 1] = null;       // Очищаем последнюю ячейку
-                size--;                       // Уменьшаем счётчик
-                return true;                  // Успешно удалено
+            Borrower b = array[slot(i)];
+            putState(b.getId(), b.snapshot());
+            balances.put(b.getId(), b.getLoanAmount());
+        }
+    }
+
+    /**
+     * Завершает пакетное изменение отдельных заемщиков (см. beginBulkLoad):
+     * по окончании внешней загрузки обновляются состояния только перечисленных заемщиков.
+     * @param touched заемщики, платежи которых менялись
+     * @param count   количество заемщиков (первые count элементов touched)
+     */
+    synchronized void endBulkUpdate(Borrower[] touched, int count) {
+        if (--bulkDepth > 0) return;
+        for (int i = 0; i < count; i++) {
+            Borrower b = touched[i];
+            if (findById(b.getId()) != b) continue;
+            putState(b.getId(), b.snapshot());
+            balances.put(b.getId(), b.getLoanAmount());
+        }
+    }
+
+    /**
+     * Возвращает n заемщиков с наибольшей суммой долга, от большей к меньшей.
+     * Выполняется за O(log n + n) по дереву порядковых статистик.
+     * @param n сколько заемщиков вернуть
+     * @return массив длины min(n, getSize())
+     */
+    public synchronized Borrower[] topByBalance(int n) {
+        int[] ids = balances.descending(n);
+        Borrower[] result = new Borrower[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = byId[ids[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает всех заемщиков очереди по убыванию суммы долга (при равенстве — по убыванию номера).
+     * @return массив длины getSize()
+     */
+    public synchronized Borrower[] sortedByBalance() {
+        return topByBalance(size);
+    }
+
+    /**
+     * Возвращает место заемщика по сумме долга: 1 — наибольший долг.
+     * @param id номер заемщика
+     * @return место (от 1 до getSize()) или -1, если номер не занят
+     */
+    public synchronized int rankByBalance(int id) {
+        if (!balances.contains(id)) return -1;
+        return balances.size() - balances.countBelow(id);
+    }
+
+    /**
+     * Возвращает сумму долга на заданном процентиле (метод ближайшего ранга):
+     * не больше этой суммы долг как минимум у percent процентов заемщиков (например, 50 — медиана).
+     * @param percent процентиль от 0 до 100
+     * @return сумма долга или NaN, если очередь пуста
+     */
+    public synchronized double balanceAtPercentile(double percent) {
+        int n = balances.size();
+        if (n == 0) return Double.NaN;
+        double p = Math.min(Math.max(percent, 0), 100) / 100.0;
+        int k = Math.max((int) Math.ceil(p * n) - 1, 0);
+        return balances.balanceOf(balances.select(k));
+    }
+
+    /**
+     * Возвращает сводку поступлений по заемщикам очереди. Сводка обновляется вместе с очередью;
+     * каждый её метод возвращает согласованный результат и не блокирует очередь.
+     * @return сводка поступлений по дням, месяцам и годам
+     */
+    public CashFlowRollup getCashFlow() {
+        return cashFlow;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок очереди за O(1): после него узлы индекса больше
+     * не меняются на месте, а дальнейшие изменения копируют затронутые пути.
+     * @return снимок очереди (заемщики упорядочены по номерам)
+     */
+    public synchronized QueueSnapshot snapshot() {
+        statesEdit = new Object();  // Замораживаем все узлы, выданные этим снимком
+        return new QueueSnapshot(states, names, version);
+    }
+
+    /**
+     * Возвращает номер версии очереди: он меняется при каждом изменении состава очереди
+     * или состояния заемщика, которое видно в снимках. Читается без блокировки,
+     * поэтому по нему дёшево проверить, не устарел ли снимок (см. QueueSnapshot.getVersion).
+     * @return номер версии
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Записывает состояние заемщика в индекс снимков (null — номер освобождён).
+     */
+    private void putState(int id, BorrowerSnapshot state) {
+        states = states.set(id, state, statesEdit);
+        version++;  // Пишется только под блокировкой очереди
+    }
+
+    /**
+     * Добавляет номер заемщика в журнал изменений.
+     * Если журнал разросся больше размера очереди, он заменяется признаком "изменено всё".
+     */
+    private void logChange(int id) {
+        if (allChanged) return;
+        if (changedCount == changedIds.length) {
+            if (changedCount >= Math.max(capacity, 1024)) {
+                allChanged = true;   // Дешевле переписать всё, чем помнить каждую правку
+                changedCount = 0;
+                return;
+            }
+            changedIds = Arrays.copyOf(changedIds, changedCount * 2);
+        }
+        changedIds[changedCount++] = id;
+    }
+
+    /**
+     * Забирает журнал изменений, очищает его и отмечает перечисленных в нём заемщиков
+     * сохранёнными: их следующее изменение снова попадёт в журнал, даже если случится,
+     * пока забранное состояние ещё записывается. Номера в журнале могут повторяться.
+     * @return номера изменённых заемщиков или null, если изменено всё содержимое
+     */
+    synchronized int[] drainChanges() {
+        int[] result = allChanged ? null : Arrays.copyOf(changedIds, changedCount);
+        if (result == null) {
+            for (int i = 0; i < size; i++) {
+                array[slot(i)].markClean();
+            }
+        } else {
+            for (int id : result) {
+                Borrower b = findById(id);
+                if (b != null) b.markClean();
+            }
+        }
+        changedCount = 0;
+        allChanged = false;
+        return result;
+    }
+
+    /**
+     * Отмечает всех заемщиков очереди сохранёнными и очищает журнал изменений.
+     */
+    synchronized void markAllClean() {
+        for (int i = 0; i < size; i++) {
+            array[slot(i)].markClean();
+        }
+        changedCount = 0;
+        allChanged = false;
+    }
+
+    /**
+     * Возвращает границу номеров: все занятые номера меньше этого значения.
+     * @return следующий свободный номер
+     */
+    synchronized int idLimit() {
+        return nextId;
+    }
+
+    /**
+     * Полностью очищает очередь и индексы перед загрузкой из файла.
+     */
+    private void clear() {
+        for (int i = 0; i < size; i++) {
+            array[slot(i)].setOwner(null);  // Выбывший заемщик может быть снова добавлен в очередь
+            array[slot(i)] = null;
+        }
+        head = 0;
+        size = 0;  // Сбрасываем счётчик
+        Arrays.fill(byId, null);
+        Arrays.fill(nameHead, -1);
+        names = new NameDictionary();  // Фамилии прежнего содержимого больше не нужны (снимки держат свой словарь)
+        nextId = 0;
+        nextOrder = 0;
+        changedCount = 0;
+        allChanged = true;
+        states = PersistentIndex.empty();
+        version++;
+        balances.clear();
+        cashFlow.clear();
+        remapCount = 0;
+        remapByOld = null;
+        notifyAll();  // Освободилось место для ожидающих в put()
+    }
+
+    /**
+     * Очищает очередь перед загрузкой по частям (см. SegmentedStore).
+     */
+    synchronized void reset() {
+        clear();
+    }
+
+    /**
+     * Переупорядочивает очередь по возрастанию ключей порядка за O(n log n).
+     * Используется после загрузки по частям, когда заемщики читаются вразнобой.
+     */
+    synchronized void sortByOrder() {
+        Borrower[] items = toArray();
+        Arrays.sort(items, (x, y) -> Long.compare(x.getQueueOrder(), y.getQueueOrder()));
+        for (int i = 0; i < size; i++) {
+            int target = slot(i);
+            array[target] = items[i];
+            posById[items[i].getId()] = target;
+        }
+    }
+
+    /**
+     * Добавляет заемщика, прочитанного из файла, сохраняя его номер.
+     * Номер служит индексом массивов, поэтому номера не меньше loadIdLimit() не принимаются как есть:
+     * заемщик получает новый номер за этой границей, а платежи с номером из файла
+     * находят его через loadedId. Так испорченная строка с номером 999999999 не раздувает индексы.
+     * @param id       номер из файла или -1, если файл старого формата (без номеров)
+     * @param lastName фамилия
+     * @return созданный заемщик или null, если очередь заполнена
+     */
+    Borrower enqueueLoaded(int id, String lastName) {
+        return enqueueLoaded(id, lastName, -1);
+    }
+
+    /**
+     * Добавляет заемщика, прочитанного из файла, сохраняя его номер и ключ порядка (см. enqueueLoaded).
+     * @param order ключ порядка из файла или -1 — поставить в конец очереди
+     */
+    private Borrower enqueueLoaded(int id, String lastName, long order) {
+        if (size >= capacity) return null;  // Игнорируем лишних заемщиков, если файл содержит больше, чем capacity
+        Borrower b = new Borrower(lastName);
+        if (id >= loadIdLimit() && loadedId(id) < 0) {
+            // Новые номера не пересекаются с допустимыми номерами файла, которые ещё могут встретиться
+            int newId = Math.max(nextId, loadIdLimit());
+            if (remapCount == remapOld.length) {
+                remapOld = Arrays.copyOf(remapOld, Math.max(remapCount * 2, 4));
+                remapNew = Arrays.copyOf(remapNew, remapOld.length);
+            }
+            remapOld[remapCount] = id;
+            remapNew[remapCount++] = newId;
+            remapByOld = null;
+            id = newId;
+        }
+        if (id >= 0) b.assignId(id);
+        enqueue(b, (order >= 0) ? order : nextOrder);
+        return b;
+    }
+
+    /**
+     * Граница номеров, принимаемых из файла без переназначения: вдвое больше ёмкости очереди,
+     * но не меньше 65536 (номера растут и при извлечении заемщиков из очереди).
+     */
+    private int loadIdLimit() {
+        return (int) Math.min(Math.max(2L * capacity, 1 << 16), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Переводит номер заемщика из загружаемого файла в номер в очереди.
+     * @param fileId номер из файла
+     * @return номер в очереди или -1, если такой номер из файла не переназначался и недопустим
+     */
+    private int loadedId(int fileId) {
+        if (fileId < loadIdLimit()) return fileId;
+        if (remapCount == 0) return -1;
+        if (remapByOld == null) {
+            remapByOld = new long[remapCount];
+            for (int k = 0; k < remapCount; k++) {
+                remapByOld[k] = ((long) remapOld[k] << 32) | remapNew[k];
             }
+            Arrays.sort(remapByOld);
         }
-        return false;  // Заемщик с такой фамилией не найден
+        int lo = 0, hi = remapCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int old = (int) (remapByOld[mid] >>> 32);
+            if (old < fileId) lo = mid + 1;
+            else if (old > fileId) hi = mid - 1;
+            else return (int) remapByOld[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * Возвращает номер, под которым заемщик записан в загружаемом файле (обратно loadedId).
+     * @param id номер в очереди
+     * @return номер из файла
+     */
+    private int fileIdOf(int id) {
+        int k = Arrays.binarySearch(remapNew, 0, remapCount, id);
+        return (k >= 0) ? remapOld[k] : id;
+    }
+
+    /**
+     * Находит владельца строки платежа по ключу — номеру заемщика
+     * или фамилии (в файлах старого формата).
+     * @param line строка платежа
+     * @param to   конец ключа в строке (не включительно)
+     * @return заемщик или null, если владелец не найден
+     */
+    private Borrower ownerOf(String line, int to) {
+        if (isNumber(line, 0, to)) {
+            return findById(loadedId(Integer.parseInt(line, 0, to, 10)));
+        }
+        return findByLastName(line.substring(0, to));
+    }
+
+    /**
+     * Разбирает ключ порядка из строки заемщика.
+     * @return ключ или -1, если это не неотрицательное число
+     */
+    private static long parseOrder(String s) {
+        if (s.isEmpty() || s.length() > 18) return -1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') return -1;
+        }
+        return Long.parseLong(s);
+    }
+
+    /**
+     * Проверяет, что участок строки состоит только из цифр.
+     */
+    private static boolean isNumber(CharSequence s, int from, int to) {
+        if (from >= to || to - from > 9) return false;  // Номер помещается в int
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return false;
+        }
+        return true;
     }
 
     /**
      * Сохраняет текущее состояние очереди в текстовый файл.
      * Формат:
      * [ЗАЕМЩИКИ]
-     * Фамилия СуммаДолга
+     * Номер Фамилия СуммаДолга
+     * ...
+     *
+     * [ОБОРОТЫ]
+     * Дата(ГГГГ-ММ-ДД) КоличествоПлатежей СуммаЗаДень
      * ...
      *
      * [ПЛАТЕЖИ]
-     * Фамилия Дата(ГГГГ-ММ-ДД) СуммаПлатежа
+     * Номер Дата(ГГГГ-ММ-ДД) СуммаПлатежа
      * ...
      *
+     * Записывается снимок очереди (заемщики в порядке очереди), поэтому запись
+     * идёт без блокировки очереди и не мешает одновременным изменениям.
+     * Файл пишется во временный рядом с целевым и подменяет его переименованием:
+     * прерванная запись оставляет прежний файл, а сохранение в файл, из которого
+     * очередь загружена лениво, не теряет ещё не прочитанные платежи.
+     *
      * @param filename имя файла для сохранения
      * @throws IOException если произошла ошибка записи
      */
     public void saveToFile(String filename) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            // Записываем заголовок и данные заемщиков
-            writer.println("[ЗАЕМЩИКИ]");
-            for (int i = 0; i < size; i++) {
-                Borrower b = array[i];
-                // Формат: Фамилия Пробел СуммаДолга
-                writer.println(b.getLastName() + " " + b.getLoanAmount());
+        File target = new File(filename).getAbsoluteFile();
+        BorrowerSnapshot[] items = snapshotForOverwrite(target).inQueueOrder();
+        File tmp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+        try {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(tmp))) {
+                writeSections(writer, items, items.length, false);
+                if (writer.checkError()) throw new IOException("Ошибка записи файла " + tmp);
+            } // try-with-resources автоматически закрывает файл
+            replaceFile(tmp, target);
+        } finally {
+            tmp.delete();  // После успешной замены временного файла уже нет
+        }
+    }
+
+    /**
+     * Возвращает снимок очереди для записи в файл target. Списки платежей, ещё не прочитанные
+     * из этого файла, предварительно загружаются: после перезаписи их участки станут недействительны.
+     * @param target файл, который будет перезаписан
+     * @return снимок очереди
+     * @throws IOException если не удалось прочитать ожидающие платежи
+     */
+    synchronized QueueSnapshot snapshotForOverwrite(File target) throws IOException {
+        String canonical = target.getCanonicalPath();
+        String lastSource = null;   // Списки одной загрузки ссылаются на одну и ту же строку имени
+        boolean sameFile = false;
+        for (int i = 0; i < size; i++) {
+            PaymentList list = array[slot(i)].getPayments();
+            String source = list.pendingFilename();
+            if (source == null) continue;
+            if (!source.equals(lastSource)) {
+                lastSource = source;
+                sameFile = new File(source).getCanonicalPath().equals(canonical);
             }
+            if (sameFile) list.load();
+        }
+        return snapshot();
+    }
 
-            // Добавляем пустую строку для читаемости
-            writer.println();
+    /**
+     * Подменяет файл target временным файлом tmp атомарным переименованием
+     * (или обычным, если файловая система не поддерживает атомарное).
+     * @param tmp    записанный временный файл в том же каталоге
+     * @param target заменяемый файл
+     * @throws IOException если переименование не удалось
+     */
+    static void replaceFile(File tmp, File target) throws IOException {
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-            // Записываем заголовок и данные платежей
-            writer.println("[ПЛАТЕЖИ]");
-            DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            for (int i = 0; i < size; i++) {
-                Borrower b = array[i];
-                PaymentNode node = b.getPayments().getHead();  // Предполагается, что платежи хранятся в односвязном списке
-                while (node != null) {
-                    Payment p = node.getData();
-                    // Формат: Фамилия Дата Сумма
-                    writer.println(b.getLastName() + " " + fmt.format(p.getDate()) + " " + p.getAmount());
-                    node = node.getNext();
-                }
+    /**
+     * Записывает заемщиков и их платежи в формате saveToFile.
+     * @param writer    поток записи
+     * @param items     заемщики для записи
+     * @param count     количество заемщиков (первые count элементов items)
+     * @param withOrder дописывать к строке заемщика его ключ порядка в очереди
+     *                  (для сегментов SegmentedStore, где заемщики хранятся не в порядке очереди)
+     */
+    static void writeSections(PrintWriter writer, BorrowerSnapshot[] items, int count, boolean withOrder) {
+        // Записываем заголовок и данные заемщиков
+        writer.println("[ЗАЕМЩИКИ]");
+        for (int i = 0; i < count; i++) {
+            BorrowerSnapshot b = items[i];
+            // Формат: Номер Фамилия СуммаДолга
+            writer.print(b.getId());
+            writer.print(' ');
+            writer.print(b.getLastName());
+            writer.print(' ');
+            if (withOrder) {
+                writer.print(b.getLoanAmount());
+                writer.print(' ');
+                writer.println(b.getQueueOrder());
+            } else {
+                writer.println(b.getLoanAmount());
+            }
+        }
+
+        // Добавляем пустую строку для читаемости
+        writer.println();
+
+        // Записываем сводку поступлений по дням записываемых заемщиков:
+        // по ней ленивая загрузка восстанавливает сводку, не читая платежи
+        CashFlowRollup rollup = new CashFlowRollup();
+        for (int i = 0; i < count; i++) {
+            for (Payment p : items[i].getPayments()) {
+                rollup.add(p.getDate(), p.getAmount());
+            }
+        }
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        writer.println("[ОБОРОТЫ]");
+        for (LocalDate day : rollup.days()) {
+            writer.print(fmt.format(day));
+            writer.print(' ');
+            writer.print(rollup.dayCount(day));
+            writer.print(' ');
+            writer.println(rollup.daySum(day));
+        }
+        writer.println();
+
+        // Записываем заголовок и данные платежей
+        writer.println("[ПЛАТЕЖИ]");
+        for (int i = 0; i < count; i++) {
+            BorrowerSnapshot b = items[i];
+            for (Payment p : b.getPayments()) {
+                // Формат: Номер Дата Сумма (пишем по частям, без промежуточной строки)
+                writer.print(b.getId());
+                writer.print(' ');
+                writer.print(fmt.format(p.getDate()));
+                writer.print(' ');
+                writer.println(p.getAmount());
             }
-        } // try-with-resources автоматически закрывает файл
+        }
     }
 
     /**
      * Загружает состояние очереди из текстового файла, созданного методом saveToFile.
      * Полностью перезаписывает текущее содержимое очереди.
+     * Поддерживаются и файлы старого формата, где заемщики и платежи записаны по фамилии без номера.
      *
      * @param filename имя файла для загрузки
      * @throws IOException если файл не найден, повреждён или имеет неверный формат
      */
-    public void loadFromFile(String filename) throws IOException {
+    public synchronized void loadFromFile(String filename) throws IOException {
         // Очищаем текущее состояние очереди
-        for (int i = 0; i < size; i++) {
-            array[i] = null;
+        clear();
+        appendFromFile(filename);
+    }
+
+    /**
+     * Добавляет к очереди заемщиков и платежи из файла в формате saveToFile, не очищая её.
+     * @param filename имя файла для загрузки
+     * @throws IOException если файл не найден, повреждён или имеет неверный формат
+     */
+    synchronized void appendFromFile(String filename) throws IOException {
+        appendFromFile(filename, false);
+    }
+
+    /**
+     * Добавляет к очереди заемщиков и платежи из файла, не очищая её.
+     * @param filename  имя файла для загрузки
+     * @param keepOrder брать ключи порядка заемщиков из файла (сегменты SegmentedStore);
+     *                  после загрузки всех сегментов очередь упорядочивается sortByOrder
+     * @throws IOException если файл не найден, повреждён или имеет неверный формат
+     */
+    synchronized void appendFromFile(String filename, boolean keepOrder) throws IOException {
+        beginBulkLoad();
+        try {
+            appendSections(filename, keepOrder);
+        } finally {
+            endBulkLoad();
         }
-        size = 0;  // Сбрасываем счётчик
+    }
 
+    /**
+     * Читает секции файла и добавляет заемщиков и платежи к очереди (см. appendFromFile).
+     */
+    private void appendSections(String filename, boolean keepOrder) throws IOException {
         // Считываем все строки файла в список для удобства обработки
         List<String> lines = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
@@ -165,10 +1087,11 @@ public class BorrowerQueue {
         }
 
         // Находим начало секций по маркерам
-        int borrowersStart = -1, paymentsStart = -1;
+        int borrowersStart = -1, rollupStart = -1, paymentsStart = -1;
         for (int i = 0; i < lines.size(); i++) {
             String trimmed = lines.get(i).trim();
             if (trimmed.equals("[ЗАЕМЩИКИ]")) borrowersStart = i + 1;
+            if (trimmed.equals("[ОБОРОТЫ]")) rollupStart = i + 1;
             if (trimmed.equals("[ПЛАТЕЖИ]")) paymentsStart = i + 1;
         }
 
@@ -177,51 +1100,212 @@ public class BorrowerQueue {
             throw new IOException("Файл повреждён: отсутствуют секции [ЗАЕМЩИКИ] или [ПЛАТЕЖИ]");
         }
 
-        // 1. Загружаем заемщиков из секции [ЗАЕМЩИКИ]
-        for (int i = borrowersStart; i < paymentsStart - 1; i++) {
+        // 1. Загружаем заемщиков из секции [ЗАЕМЩИКИ] (за ней может идти секция [ОБОРОТЫ])
+        boolean rollupFirst = rollupStart > borrowersStart && rollupStart < paymentsStart;
+        int borrowersEnd = rollupFirst ? rollupStart - 1 : paymentsStart - 1;
+        for (int i = borrowersStart; i < borrowersEnd; i++) {
             String line = lines.get(i).trim();
             if (line.isEmpty()) continue;  // Пропускаем пустые строки
 
-            // Разделяем строку на фамилию и долг (ограничиваем до 2 частей на случай пробелов в фамилии — но здесь фамилия без пробелов)
-            String[] parts = line.split(" ", 2);
-            if (parts.length != 2) continue; // Некорректная строка — пропускаем
-
-            String lastName = parts[0];
-            // Создаём нового заемщика и добавляем в очередь, если есть место
-            if (size < capacity) {
-                array[size] = new Borrower(lastName);
-                size++;
+            // Разделяем строку на номер, фамилию, долг и ключ порядка (в старом формате номера нет,
+            // ключ порядка пишется только в сегменты)
+            String[] parts = line.split(" ");
+            if ((parts.length == 3 || parts.length == 4) && isNumber(parts[0], 0, parts[0].length())) {
+                // В сегментах прежнего формата ключа нет — их очередь была упорядочена по номерам
+                long order = !keepOrder ? -1 : (parts.length == 4) ? parseOrder(parts[3]) : Long.parseLong(parts[0]);
+                enqueueLoaded(Integer.parseInt(parts[0]), parts[1], order);
+            } else if (parts.length == 2) {
+                enqueueLoaded(-1, parts[0]);
             }
-            // Игнорируем лишних заемщиков, если файл содержит больше, чем capacity
+            // Некорректная строка — пропускаем
         }
 
-        // 2. Загружаем платежи из секции [ПЛАТЕЖИ]
+        // 2. Загружаем платежи из секции [ПЛАТЕЖИ]; сводка поступлений из [ОБОРОТЫ] не читается —
+        // она строится заново по добавляемым платежам
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         for (int i = paymentsStart; i < lines.size(); i++) {
             String line = lines.get(i).trim();
             if (line.isEmpty()) continue;
 
-            // Разделяем на 3 части: фамилия, дата, сумма
-            String[] parts = line.split(" ", 3);
-            if (parts.length != 3) continue; // Некорректный формат — пропускаем
-
-            String lastName = parts[0];
-            LocalDate date = LocalDate.parse(parts[1], fmt); // Парсим дату в формате yyyy-MM-dd
-            double amount = Double.parseDouble(parts[2]);   // Преобразуем сумму в число
+            // Разделяем на 3 части: номер (или фамилия), дата, сумма — ключ не выделяем в подстроку
+            int sp1 = line.indexOf(' ');
+            int sp2 = (sp1 < 0) ? -1 : line.indexOf(' ', sp1 + 1);
+            if (sp2 < 0) continue; // Некорректный формат — пропускаем
 
-            // Ищем заемщика с такой фамилией в уже загруженной очереди
-            Borrower target = null;
-            for (int j = 0; j < size; j++) {
-                if (array[j].getLastName().equals(lastName)) {
-                    target = array[j];
-                    break;
-                }
-            }
+            // Ищем заемщика по номеру через первичный индекс
+            Borrower target = ownerOf(line, sp1);
 
             // Если заемщик найден — добавляем ему платёж
             if (target != null) {
+                LocalDate date = LocalDate.parse(line.substring(sp1 + 1, sp2), fmt); // Парсим дату в формате yyyy-MM-dd
+                double amount = Double.parseDouble(line.substring(sp2 + 1));        // Преобразуем сумму в число
                 target.addPayment(new Payment(date, amount));
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Загружает очередь из файла в "ленивом" режиме.
+     * Сразу читается только секция [ЗАЕМЩИКИ], а для секции [ПЛАТЕЖИ] строится индекс
+     * смещений: для каждого заемщика запоминается участок файла с его платежами.
+     * Платежи заемщика читаются при первом обращении к его списку (см. PaymentList),
+     * а до этого его долг берётся из секции [ЗАЕМЩИКИ].
+     * Сводка поступлений читается из секции [ОБОРОТЫ]; если её нет (файл старого формата)
+     * или часть заемщиков не поместилась в очередь, в строках платежей разбираются дата и сумма.
+     * Файл не должен изменяться извне, пока все списки не загружены (сохранение очереди
+     * в тот же файл сначала дочитывает их, см. saveToFile).
+     *
+     * @param filename имя файла для загрузки
+     * @throws IOException если файл не найден, повреждён или имеет неверный формат
+     */
+    public synchronized void loadFromFileLazy(String filename) throws IOException {
+        // Очищаем текущее состояние очереди
+        clear();
+
+        // Участки платежей по номерам заемщиков: начало первой и конец последней строки.
+        // Массивы создаются при входе в секцию [ПЛАТЕЖИ], когда все номера уже известны.
+        long[] blockStart = null;
+        long[] blockEnd = null;
+        boolean[] keyedByName = null;  // Строки заемщика записаны по фамилии (старый формат)
+        double[] knownTotal = new double[capacity];
+
+        boolean hasBorrowers = false, hasPayments = false;
+        boolean hasRollup = false;    // Сводка прочитана из секции [ОБОРОТЫ]
+        boolean dropped = false;      // Часть заемщиков файла не поместилась в очередь
+        int section = 0;              // 0 — до секций, 1 — [ЗАЕМЩИКИ], 2 — [ПЛАТЕЖИ], 3 — [ОБОРОТЫ]
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        byte[] lineBuf = new byte[256];
+        byte[] prevKey = new byte[256];
+        int prevKeyLen = -1;          // Ключ (номер или фамилия) предыдущей строки платежа
+        int prevOwner = -1;           // Номер заемщика предыдущей строки платежа
+        long offset = 0;
+
+        try (InputStream in = new FileInputStream(filename)) {
+            byte[] chunk = new byte[1 << 16];
+            int pos = 0, limit = 0;
+            int len = 0;
+            long lineStart = 0;
+            int c;
+            while (true) {
+                // Читаем файл блоками, а не по одному байту через read()
+                if (pos == limit) {
+                    limit = Math.max(in.read(chunk), 0);
+                    pos = 0;
+                }
+                c = (pos < limit) ? (chunk[pos++] & 0xFF) : -1;
+                if (c != -1 && c != '\n') {
+                    if (len == lineBuf.length) lineBuf = Arrays.copyOf(lineBuf, len * 2);
+                    lineBuf[len++] = (byte) c;
+                    offset++;
+                    continue;
+                }
+                if (c == '\n') offset++;
+
+                // Обрезаем пробелы и \r по краям строки
+                int from = 0, to = len;
+                while (from < to && (lineBuf[from] == ' ' || lineBuf[from] == '\t')) from++;
+                while (to > from && (lineBuf[to - 1] == ' ' || lineBuf[to - 1] == '\r' || lineBuf[to - 1] == '\t')) to--;
+
+                if (to > from && lineBuf[from] == '[') {
+                    // Маркер секции — единственные строки, которые декодируются в этой секции целиком
+                    String marker = new String(lineBuf, from, to - from);
+                    if (marker.equals("[ЗАЕМЩИКИ]")) { section = 1; hasBorrowers = true; }
+                    if (marker.equals("[ПЛАТЕЖИ]")) { section = 2; hasPayments = true; }
+                    if (marker.equals("[ОБОРОТЫ]")) {
+                        // Сводка годится, только если предшествует платежам и описывает всех заемщиков
+                        section = 3;
+                        hasRollup = !hasPayments && !dropped;
+                        if (!hasRollup) cashFlow.clear();
+                    }
+                } else if (to > from && section == 1) {
+                    String[] parts = new String(lineBuf, from, to - from).split(" ");
+                    Borrower b = null;
+                    boolean keyed = (parts.length == 3 || parts.length == 4)
+                            && isNumber(parts[0], 0, parts[0].length());
+                    if (keyed) {
+                        b = enqueueLoaded(Integer.parseInt(parts[0]), parts[1]);
+                    } else if (parts.length == 2) {
+                        b = enqueueLoaded(-1, parts[0]);
+                    }
+                    if (b != null) {
+                        knownTotal[size - 1] = Double.parseDouble(parts[keyed ? 2 : 1]);
+                    } else if (keyed || parts.length == 2) {
+                        dropped = true;
+                    }
+                } else if (to > from && section == 3) {
+                    if (hasRollup) {
+                        String[] parts = new String(lineBuf, from, to - from).split(" ");
+                        if (parts.length == 3) {
+                            cashFlow.addDay(LocalDate.parse(parts[0], fmt), Long.parseLong(parts[1]),
+                                    Double.parseDouble(parts[2]));
+                        }
+                    }
+                } else if (to > from && section == 2) {
+                    if (blockStart == null) {
+                        blockStart = new long[nextId];
+                        blockEnd = new long[nextId];
+                        keyedByName = new boolean[nextId];
+                        Arrays.fill(blockStart, -1);
+                    }
+
+                    // Берём только ключ — дату и сумму не разбираем
+                    int keyEnd = from;
+                    while (keyEnd < to && lineBuf[keyEnd] != ' ') keyEnd++;
+                    int keyLen = keyEnd - from;
+
+                    boolean sameKey = keyLen == prevKeyLen
+                            && Arrays.equals(lineBuf, from, keyEnd, prevKey, 0, keyLen);
+                    if (!sameKey) {
+                        // Ключ декодируется только при смене владельца строк
+                        String key = new String(lineBuf, from, keyLen);
+                        Borrower owner = ownerOf(key, key.length());
+                        prevOwner = (owner != null) ? owner.getId() : -1;
+                        if (prevOwner >= 0 && !isNumber(key, 0, key.length())) keyedByName[prevOwner] = true;
+                        if (keyLen > prevKey.length) prevKey = new byte[keyLen * 2];
+                        System.arraycopy(lineBuf, from, prevKey, 0, keyLen);
+                        prevKeyLen = keyLen;
+                    }
+
+                    // Расширяем участок заемщика до конца текущей строки
+                    if (prevOwner >= 0) {
+                        if (blockStart[prevOwner] < 0) blockStart[prevOwner] = lineStart;
+                        blockEnd[prevOwner] = offset;
+                        if (!hasRollup && keyEnd < to) {
+                            // Сводки в файле нет — учитываем платёж по дате и сумме из строки
+                            String rest = new String(lineBuf, keyEnd + 1, to - keyEnd - 1).trim();
+                            int sp = rest.indexOf(' ');
+                            if (sp > 0) {
+                                cashFlow.add(LocalDate.parse(rest.substring(0, sp), fmt),
+                                        Double.parseDouble(rest.substring(sp + 1)));
+                            }
+                        }
+                    }
+                }
+
+                if (c == -1) break;
+                len = 0;
+                lineStart = offset;
+            }
+        }
+
+        // Проверка целостности файла
+        if (!hasBorrowers || !hasPayments) {
+            throw new IOException("Файл повреждён: отсутствуют секции [ЗАЕМЩИКИ] или [ПЛАТЕЖИ]");
+        }
+
+        // Подключаем найденные участки к спискам платежей
+        for (int i = 0; blockStart != null && i < size; i++) {
+            Borrower b = array[slot(i)];
+            int id = b.getId();
+            if (blockStart[id] >= 0) {
+                // В файле старого формата строки платежей отбираются по фамилии, иначе — по номеру
+                LazyPaymentSource source = keyedByName[id]
+                        ? LazyPaymentSource.byLastName(filename, b.getLastName(), blockStart[id], blockEnd[id])
+                        : LazyPaymentSource.byId(filename, fileIdOf(id), blockStart[id], blockEnd[id]);
+                b.getPayments().attachSource(source, knownTotal[i]);
+                putState(id, b.snapshot());
+                balances.put(id, knownTotal[i]);
+            }
+        }
+    }
+}
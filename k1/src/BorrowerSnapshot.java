@@ -0,0 +1,44 @@
+/**
+ * Класс BorrowerSnapshot — неизменяемое состояние заемщика на момент снимка:
+ * номер, фамилия, ключ порядка в очереди и снимок списка платежей.
+ */
+public class BorrowerSnapshot {
+
+    private final int id;
+    private final String lastName;
+    private final int nameId;
+    private final long queueOrder;
+    private final PaymentSnapshot payments;
+
+    BorrowerSnapshot(int id, String lastName, int nameId, long queueOrder, PaymentSnapshot payments) {
+        this.id = id;
+        this.lastName = lastName;
+        this.nameId = nameId;
+        this.queueOrder = queueOrder;
+        this.payments = payments;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public int getNameId() {
+        return nameId;
+    }
+
+    long getQueueOrder() {
+        return queueOrder;
+    }
+
+    public PaymentSnapshot getPayments() {
+        return payments;
+    }
+
+    public double getLoanAmount() {
+        return payments.totalSum();
+    }
+}
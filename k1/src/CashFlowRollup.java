@@ -0,0 +1,289 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Класс CashFlowRollup — сводка поступлений по календарю: количество и сумма платежей
+ * по дням, месяцам и годам. Очередь заемщиков обновляет сводку при каждом добавлении
+ * и удалении платежа, поэтому итоги за месяц или год читаются за O(log число корзин), а за произвольный
+ * период — за O(число месяцев и дней периода), без обхода самих платежей.
+ *
+ * Корзины одного уровня хранятся в массивах, упорядоченных по ключу (номер дня, номер месяца, год),
+ * и заводятся только для дат, по которым были платежи: ошибочная дата вроде года 1 или 9999
+ * добавляет одну корзину, а не массив на все дни между ней и остальными платежами.
+ * Корзина для даты позже всех имеющихся дописывается в конец за O(1).
+ * Суммы в целых копейках складываются точно в long; суммы с долями копейки копятся
+ * отдельно в double. Корзина, из которой удалены все платежи, обнуляется полностью.
+ */
+public class CashFlowRollup {
+
+    // Корзины по дням: ключ — номер дня от 1970-01-01 (LocalDate.toEpochDay)
+    private final Buckets days = new Buckets();
+    // Корзины по месяцам: ключ — год * 12 + (месяц - 1)
+    private final Buckets months = new Buckets();
+    // Корзины по годам: ключ — год
+    private final Buckets years = new Buckets();
+
+    /**
+     * Учитывает поступивший платёж.
+     * @param date   дата платежа
+     * @param amount сумма платежа
+     */
+    synchronized void add(LocalDate date, double amount) {
+        record(date, 1, amount);
+    }
+
+    /**
+     * Исключает удалённый платёж.
+     * @param date   дата платежа
+     * @param amount сумма платежа
+     */
+    synchronized void remove(LocalDate date, double amount) {
+        record(date, -1, -amount);
+    }
+
+    /**
+     * Добавляет готовую дневную корзину (при загрузке сводки из файла).
+     * @param date  день
+     * @param count количество платежей за день
+     * @param sum   сумма платежей за день
+     */
+    synchronized void addDay(LocalDate date, long count, double sum) {
+        record(date, count, sum);
+    }
+
+    /**
+     * Удаляет все корзины.
+     */
+    synchronized void clear() {
+        days.clear();
+        months.clear();
+        years.clear();
+    }
+
+    private void record(LocalDate date, long count, double amount) {
+        long cents = Math.round(amount * 100);
+        double extra = 0;
+        if (cents / 100.0 != amount) {  // Сумма с долями копейки — копится отдельно
+            cents = 0;
+            extra = amount;
+        }
+        days.add(date.toEpochDay(), count, cents, extra);
+        months.add(monthKey(date.getYear(), date.getMonthValue()), count, cents, extra);
+        years.add(date.getYear(), count, cents, extra);
+    }
+
+    private static long monthKey(int year, int month) {
+        return year * 12L + (month - 1);
+    }
+
+    /**
+     * Возвращает сумму платежей за день.
+     * @param date день
+     * @return сумма (0, если платежей не было)
+     */
+    public synchronized double daySum(LocalDate date) {
+        return days.sum(date.toEpochDay());
+    }
+
+    /**
+     * Возвращает количество платежей за день.
+     * @param date день
+     * @return число платежей
+     */
+    public synchronized long dayCount(LocalDate date) {
+        return days.count(date.toEpochDay());
+    }
+
+    /**
+     * Возвращает сумму платежей за месяц.
+     * @param month месяц
+     * @return сумма (0, если платежей не было)
+     */
+    public synchronized double monthSum(YearMonth month) {
+        return months.sum(monthKey(month.getYear(), month.getMonthValue()));
+    }
+
+    /**
+     * Возвращает количество платежей за месяц.
+     * @param month месяц
+     * @return число платежей
+     */
+    public synchronized long monthCount(YearMonth month) {
+        return months.count(monthKey(month.getYear(), month.getMonthValue()));
+    }
+
+    /**
+     * Возвращает сумму платежей за год.
+     * @param year год
+     * @return сумма (0, если платежей не было)
+     */
+    public synchronized double yearSum(int year) {
+        return years.sum(year);
+    }
+
+    /**
+     * Возвращает количество платежей за год.
+     * @param year год
+     * @return число платежей
+     */
+    public synchronized long yearCount(int year) {
+        return years.count(year);
+    }
+
+    /**
+     * Возвращает сумму платежей за период. Целые месяцы периода берутся из месячных корзин,
+     * а дни в неполных месяцах по краям — из дневных.
+     * @param from начало периода (включительно)
+     * @param to   конец периода (включительно)
+     * @return сумма платежей за период
+     */
+    public synchronized double sumBetween(LocalDate from, LocalDate to) {
+        double sum = 0;
+        LocalDate d = from;
+        while (!d.isAfter(to)) {
+            if (d.getDayOfMonth() == 1 && !d.plusMonths(1).isAfter(to.plusDays(1))) {
+                sum += months.sum(monthKey(d.getYear(), d.getMonthValue()));
+                d = d.plusMonths(1);
+            } else {
+                sum += days.sum(d.toEpochDay());
+                d = d.plusDays(1);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Возвращает месяцы, в которых были платежи, по возрастанию.
+     * @return массив месяцев
+     */
+    public synchronized YearMonth[] months() {
+        long[] keys = months.keys();
+        YearMonth[] result = new YearMonth[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = YearMonth.of((int) Math.floorDiv(keys[i], 12), (int) Math.floorMod(keys[i], 12) + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает годы, в которых были платежи, по возрастанию.
+     * @return массив лет
+     */
+    public synchronized int[] years() {
+        long[] keys = years.keys();
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает дни, в которых были платежи, по возрастанию (для сохранения сводки).
+     * @return массив дней
+     */
+    synchronized LocalDate[] days() {
+        long[] keys = days.keys();
+        LocalDate[] result = new LocalDate[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = LocalDate.ofEpochDay(keys[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Корзины одного уровня: ключи непустых (или опустевших) корзин по возрастанию
+     * и параллельные им массивы количества и сумм.
+     */
+    private static final class Buckets {
+
+        private long[] keys = new long[0];
+        private int size;
+        private long[] count = new long[0];
+        // Сумма в целых копейках (точно)
+        private long[] cents = new long[0];
+        // Сумма платежей с долями копейки
+        private double[] extra = new double[0];
+
+        void add(long key, long n, long c, double e) {
+            int i = cell(key);
+            count[i] += n;
+            if (count[i] == 0) {
+                // Удалены все платежи корзины — сбрасываем накопленную погрешность
+                cents[i] = 0;
+                extra[i] = 0;
+            } else {
+                cents[i] += c;
+                extra[i] += e;
+            }
+        }
+
+        long count(long key) {
+            int i = find(key);
+            return (i >= 0) ? count[i] : 0;
+        }
+
+        double sum(long key) {
+            int i = find(key);
+            if (i < 0) return 0;
+            return cents[i] / 100.0 + extra[i];
+        }
+
+        /**
+         * Ключи непустых корзин по возрастанию.
+         */
+        long[] keys() {
+            long[] result = new long[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (count[i] != 0) result[n++] = keys[i];
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        void clear() {
+            keys = new long[0];
+            size = 0;
+            count = new long[0];
+            cents = new long[0];
+            extra = new double[0];
+        }
+
+        /**
+         * Ищет ячейку ключа.
+         * @return индекс ячейки или отрицательное значение (-(точка вставки) - 1), как Arrays.binarySearch
+         */
+        private int find(long key) {
+            if (size > 0 && keys[size - 1] == key) return size - 1;  // Чаще всего пишутся последние даты
+            return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        /**
+         * Возвращает ячейку ключа, заводя новую корзину, если ключа ещё нет.
+         */
+        private int cell(long key) {
+            int i = (size > 0 && keys[size - 1] < key) ? -size - 1 : find(key);
+            if (i >= 0) return i;
+            i = -i - 1;
+            if (size == keys.length) {
+                int length = Math.max(size * 2, 16);
+                keys = Arrays.copyOf(keys, length);
+                count = Arrays.copyOf(count, length);
+                cents = Arrays.copyOf(cents, length);
+                extra = Arrays.copyOf(extra, length);
+            }
+            // Сдвигаем корзины с большими ключами на одну ячейку вправо
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(count, i, count, i + 1, size - i);
+            System.arraycopy(cents, i, cents, i + 1, size - i);
+            System.arraycopy(extra, i, extra, i + 1, size - i);
+            keys[i] = key;
+            count[i] = 0;
+            cents[i] = 0;
+            extra[i] = 0;
+            size++;
+            return i;
+        }
+    }
+}
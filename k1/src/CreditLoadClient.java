@@ -0,0 +1,120 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Класс CreditLoadClient — генератор нагрузки для CreditServer.
+ * Запускает несколько клиентских потоков, каждый из которых последовательно отправляет запросы
+ * поиска заемщика по случайному номеру (и, при заданной доле, платежи), и выводит
+ * пропускную способность и задержки: медиану, 99-й и 99.9-й процентили и максимум.
+ *
+ * Запуск: CreditLoadClient [порт] [потоки] [запросов_на_поток] [процент_платежей]
+ */
+public class CreditLoadClient {
+
+    public static void main(String[] args) throws Exception {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 16;
+        int requests = (args.length > 2) ? Integer.parseInt(args[2]) : 10_000;
+        int writePercent = (args.length > 3) ? Integer.parseInt(args[3]) : 0;
+
+        String base = "http://localhost:" + port;
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        // Узнаём количество заемщиков, чтобы выбирать номера из занятого диапазона
+        String total = client.send(HttpRequest.newBuilder(URI.create(base + "/total")).build(),
+                HttpResponse.BodyHandlers.ofString()).body().trim();
+        int borrowers = Math.max(Integer.parseInt(total.split(" ")[0]), 1);
+        System.out.println("Заемщиков на сервере: " + borrowers);
+
+        // Прогрев: дать серверу и клиенту скомпилировать горячие пути до замеров
+        run(client, base, threads, Math.min(requests, 1000), borrowers, writePercent);
+
+        long started = System.nanoTime();
+        Result result = run(client, base, threads, requests, borrowers, writePercent);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.printf(Locale.ROOT, "Запросов: %d за %.2f с (%.0f запросов/с), ошибок: %d, не найдено: %d%n",
+                latencies.length, seconds, latencies.length / seconds, result.errors, result.notFound);
+        System.out.printf(Locale.ROOT, "Задержка, мс: p50 %.3f  p99 %.3f  p99.9 %.3f  макс %.3f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e6);
+    }
+
+    /**
+     * Итог прогона: задержки всех запросов в наносекундах и счётчики неуспешных ответов.
+     */
+    private static class Result {
+        final long[] latencies;
+        int errors;
+        int notFound;
+
+        Result(int count) {
+            this.latencies = new long[count];
+        }
+    }
+
+    /**
+     * Выполняет прогон: каждый поток отправляет requests запросов и пишет задержки в свою часть массива.
+     */
+    private static Result run(HttpClient client, String base, int threads, int requests,
+                              int borrowers, int writePercent) throws InterruptedException {
+        Result result = new Result(threads * requests);
+        int[] errors = new int[threads];
+        int[] notFound = new int[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int r = 0; r < requests; r++) {
+                    int id = random.nextInt(borrowers);
+                    HttpRequest request;
+                    if (random.nextInt(100) < writePercent) {
+                        LocalDate date = LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365));
+                        request = HttpRequest.newBuilder(URI.create(base + "/payment?id=" + id
+                                + "&date=" + date + "&amount=" + (1 + random.nextInt(1000))))
+                                .POST(HttpRequest.BodyPublishers.noBody()).build();
+                    } else {
+                        request = HttpRequest.newBuilder(URI.create(base + "/borrower?id=" + id)).build();
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+                        if (status == 404) notFound[worker]++;
+                        else if (status != 200) errors[worker]++;
+                    } catch (Exception e) {
+                        errors[worker]++;
+                    }
+                    result.latencies[worker * requests + r] = System.nanoTime() - start;
+                }
+            }, "load-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+        for (int t = 0; t < threads; t++) {
+            result.errors += errors[t];
+            result.notFound += notFound[t];
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает процентиль отсортированного массива задержек в миллисекундах.
+     */
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
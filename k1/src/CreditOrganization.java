@@ -8,6 +8,8 @@ public class CreditOrganization {
 
     // Внутренняя очередь заемщиков, реализующая хранение и базовые операции
     private final BorrowerQueue borrowers;
+    // Хранилище по частям, в которое сохранялась или из которого загружалась организация
+    private SegmentedStore store;
 
     /**
      * Конструктор кредитной организации.
@@ -37,7 +39,7 @@ public class CreditOrganization {
     }
 
     /**
-     * Удаляет заемщика по его фамилии.
+     * Удаляет заемщика по его фамилии (если таких несколько — добавленного раньше всех).
      * Удаление производится из любой позиции очереди (не обязательно из начала).
      * @param lastName фамилия заемщика, которого нужно удалить
      * @return true, если заемщик был найден и удалён;
@@ -48,7 +50,7 @@ public class CreditOrganization {
     }
 
     /**
-     * Находит заемщика по фамилии.
+     * Находит заемщика по фамилии (если таких несколько — добавленного раньше всех).
      * @param lastName фамилия для поиска
      * @return объект Borrower, если найден; null — если не найден
      */
@@ -56,18 +58,133 @@ public class CreditOrganization {
         return borrowers.findByLastName(lastName); // Поиск делает очередь
     }
 
+    /**
+     * Удаляет всех заемщиков, удовлетворяющих условию (например, закрывает погашенные кредиты).
+     * Выполняется за один проход по очереди.
+     * @param condition условие удаления
+     * @return количество удалённых заемщиков
+     */
+    public int removeBorrowersIf(java.util.function.Predicate<Borrower> condition) {
+        return borrowers.removeIf(condition); // Делегируем очереди
+    }
+
+    /**
+     * Удаляет заемщика по его номеру.
+     * @param id номер заемщика
+     * @return true, если заемщик был найден и удалён; false — если номер не занят
+     */
+    public boolean removeBorrowerById(int id) {
+        return borrowers.removeById(id); // Делегируем очереди
+    }
+
+    /**
+     * Находит заемщика по номеру.
+     * @param id номер заемщика
+     * @return объект Borrower, если найден; null — если не найден
+     */
+    public Borrower findBorrowerById(int id) {
+        return borrowers.findById(id);
+    }
+
+    /**
+     * Находит всех заемщиков с указанной фамилией.
+     * @param lastName фамилия для поиска
+     * @return массив заемщиков в порядке добавления (пустой, если не найдено)
+     */
+    public Borrower[] findBorrowersByLastName(String lastName) {
+        return borrowers.findAllByLastName(lastName);
+    }
+
     /**
      * Рассчитывает общую сумму долгов всех текущих заемщиков в организации.
+     * Считается по снимку очереди, поэтому одновременные изменения не искажают итог.
      * @return сумма кредитов (в денежных единицах, например, рублях)
      */
     public double totalCredits() {
-        double sum = 0;
-        // Проходим по всем заемщикам в очереди по индексу
-        for (int i = 0; i < borrowers.getSize(); i++) {
-            // Накапливаем сумму долга каждого заемщика
-            sum += borrowers.getAt(i).getLoanAmount();
-        }
-        return sum;
+        return borrowers.snapshot().totalCredits();
+    }
+
+    /**
+     * Возвращает заемщиков с наибольшей суммой долга.
+     * @param n сколько заемщиков вернуть
+     * @return заемщики от большего долга к меньшему
+     */
+    public Borrower[] topBorrowers(int n) {
+        return borrowers.topByBalance(n);
+    }
+
+    /**
+     * Возвращает место заемщика по сумме долга (1 — наибольший долг).
+     * @param id номер заемщика
+     * @return место или -1, если заемщик не найден
+     */
+    public int balanceRank(int id) {
+        return borrowers.rankByBalance(id);
+    }
+
+    /**
+     * Возвращает сумму долга на заданном процентиле.
+     * @param percent процентиль от 0 до 100
+     * @return сумма долга или NaN, если заемщиков нет
+     */
+    public double balancePercentile(double percent) {
+        return borrowers.balanceAtPercentile(percent);
+    }
+
+    /**
+     * Возвращает сводку поступлений по дням, месяцам и годам (см. CashFlowRollup).
+     * @return сводка поступлений
+     */
+    public CashFlowRollup getCashFlow() {
+        return borrowers.getCashFlow();
+    }
+
+    /**
+     * Возвращает сумму платежей за месяц по всей организации.
+     * @param month месяц
+     * @return сумма поступлений за месяц
+     */
+    public double monthlyInflow(java.time.YearMonth month) {
+        return borrowers.getCashFlow().monthSum(month);
+    }
+
+    /**
+     * Возвращает сумму платежей за год по всей организации.
+     * @param year год
+     * @return сумма поступлений за год
+     */
+    public double yearlyInflow(int year) {
+        return borrowers.getCashFlow().yearSum(year);
+    }
+
+    /**
+     * Находит заемщиков с просрочкой по графику погашения на указанную дату.
+     * Проверка выполняется параллельно на всех ядрах без ограничения по времени.
+     * @param asOf      дата проверки
+     * @param schedules график погашения для каждого заемщика (null — у заемщика нет графика)
+     * @return отчёт о просрочках
+     * @throws InterruptedException если поток был прерван во время проверки
+     */
+    public OverdueReport findOverdue(java.time.LocalDate asOf,
+                                     java.util.function.Function<Borrower, RepaymentSchedule> schedules)
+            throws InterruptedException {
+        OverdueEngine engine = new OverdueEngine(Runtime.getRuntime().availableProcessors(), 0, 0);
+        return engine.run(borrowers, asOf, schedules);
+    }
+
+    /**
+     * Импортирует платежи из файла с проверкой строк и отсевом дубликатов (см. PaymentImporter).
+     * Строки разбираются параллельно на всех ядрах.
+     * @param filename    файл платежей
+     * @param rejectsFile файл отчёта об отклонённых строках (null — не записывать)
+     * @return итог импорта
+     * @throws java.io.IOException  если не удалось прочитать файл или записать отчёт
+     * @throws InterruptedException если поток был прерван во время импорта
+     */
+    public ImportReport importPayments(String filename, String rejectsFile)
+            throws java.io.IOException, InterruptedException {
+        PaymentImporter importer = new PaymentImporter(Runtime.getRuntime().availableProcessors());
+        return importer.run(borrowers, filename, rejectsFile);
     }
 
     /**
@@ -89,4 +206,63 @@ public class CreditOrganization {
     public void load(String filename) throws java.io.IOException {
         borrowers.loadFromFile(filename); // Делегируем загрузку очереди
     }
-}
\ No newline at end of file
+
+    /**
+     * Сохраняет кредитную организацию в сжатый архив (см. PortfolioArchive).
+     * @param filename путь к файлу архива (обычно с расширением .gz)
+     * @throws java.io.IOException если произошла ошибка записи
+     */
+    public void saveCompressed(String filename) throws java.io.IOException {
+        PortfolioArchive.save(borrowers, filename);
+    }
+
+    /**
+     * Загружает кредитную организацию из сжатого архива.
+     * Текущее содержимое полностью заменяется данными из архива.
+     * @param filename путь к файлу архива
+     * @throws java.io.IOException если файл не найден или повреждён
+     */
+    public void loadCompressed(String filename) throws java.io.IOException {
+        PortfolioArchive.load(borrowers, filename);
+    }
+
+    /**
+     * Загружает состояние кредитной организации из текстового файла в "ленивом" режиме:
+     * сразу читаются только заемщики, а платежи каждого заемщика — при первом обращении к ним.
+     * @param filename путь к файлу для загрузки
+     * @throws java.io.IOException если файл не найден, недоступен или имеет повреждённый формат
+     */
+    public void loadLazy(String filename) throws java.io.IOException {
+        borrowers.loadFromFileLazy(filename); // Делегируем загрузку очереди
+    }
+
+    /**
+     * Сохраняет кредитную организацию в каталог по частям (см. SegmentedStore).
+     * При повторном сохранении в тот же каталог переписываются только изменённые части.
+     * @param directory путь к каталогу
+     * @return количество переписанных частей
+     * @throws java.io.IOException если произошла ошибка записи
+     */
+    public int saveSegmented(String directory) throws java.io.IOException {
+        return storeFor(directory).save(borrowers);
+    }
+
+    /**
+     * Загружает кредитную организацию из каталога, сохранённого методом saveSegmented.
+     * @param directory путь к каталогу
+     * @throws java.io.IOException если каталог не содержит сохранения или оно повреждено
+     */
+    public void loadSegmented(String directory) throws java.io.IOException {
+        storeFor(directory).load(borrowers);
+    }
+
+    /**
+     * Возвращает хранилище для каталога, переиспользуя текущее, если каталог тот же.
+     */
+    private SegmentedStore storeFor(String directory) {
+        if (store == null || !store.getDirectory().equals(new java.io.File(directory).getPath())) {
+            store = new SegmentedStore(directory);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,296 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Класс CreditServer — HTTP-сервер запросов к кредитной организации без графического интерфейса.
+ * Слушает только локальный адрес и отвечает короткими текстовыми строками (UTF-8, поля через пробел):
+ *
+ * GET  /total                             → "Количество Сумма"
+ * GET  /borrower?id=Номер                 → "Номер Фамилия Сумма"
+ * GET  /borrower?name=Фамилия             → по строке "Номер Фамилия Сумма" на каждого заемщика
+ * POST /payment?id=Номер&date=ГГГГ-ММ-ДД&amount=Сумма → "Номер Фамилия НоваяСумма"
+ * GET  /inflow?year=Год                   → по строке "ГГГГ-ММ Количество Сумма" на каждый месяц с платежами,
+ *                                            затем итог "Год Количество Сумма"
+ *
+ * Ошибки: 400 — неверные параметры, 404 — заемщик не найден, 405 — неверный метод.
+ * Запросы на чтение обслуживаются из неизменяемого снимка (PortfolioSnapshot) без блокировок;
+ * платёж вносится под блокировкой очереди, после чего публикуется новый снимок.
+ * Перед каждым чтением версия снимка сверяется с версией очереди (BorrowerQueue.version, без блокировки):
+ * после изменений в обход сервера (GUI, импорт, загрузка) снимок перестраивается при первом же запросе.
+ * Поступления по месяцам берутся из сводки очереди (CashFlowRollup) без обхода платежей.
+ */
+public class CreditServer implements AutoCloseable {
+
+    static {
+        // Заголовки и тело ответа уходят отдельными пакетами; без TCP_NODELAY алгоритм Нейгла
+        // вместе с отложенным подтверждением добавляет к каждому ответу около 40 мс
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // Обслуживаемая организация
+    private final CreditOrganization org;
+    // HTTP-сервер и пул потоков обработки запросов
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Текущий снимок портфеля для чтения
+    private volatile PortfolioSnapshot snapshot;
+
+    /**
+     * Конструктор сервера.
+     * @param org  кредитная организация
+     * @param port TCP-порт на локальном адресе (0 — выбрать свободный)
+     * @param threads количество потоков обработки запросов
+     * @throws IOException если не удалось занять порт
+     */
+    public CreditServer(CreditOrganization org, int port, int threads) throws IOException {
+        this.org = org;
+        this.snapshot = PortfolioSnapshot.of(org.getBorrowers());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        server.setExecutor(executor);
+        server.createContext("/total", this::handleTotal);
+        server.createContext("/borrower", this::handleBorrower);
+        server.createContext("/payment", this::handlePayment);
+        server.createContext("/inflow", this::handleInflow);
+    }
+
+    /**
+     * Запускает приём запросов.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Возвращает порт, на котором работает сервер.
+     * @return номер порта
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Перестраивает снимок после изменений, сделанных в обход сервера
+     * (добавление или удаление заемщиков, загрузка из файла).
+     * Вызывать не обязательно: устаревший снимок перестраивается при следующем запросе.
+     */
+    public void refresh() {
+        snapshot = PortfolioSnapshot.of(org.getBorrowers());
+    }
+
+    /**
+     * Возвращает актуальный снимок: текущий, если очередь с тех пор не менялась, иначе новый.
+     */
+    private PortfolioSnapshot current() {
+        PortfolioSnapshot s = snapshot;
+        if (s.getVersion() == org.getBorrowers().version()) return s;
+        s = PortfolioSnapshot.of(org.getBorrowers());
+        snapshot = s;  // Если другой поток опубликовал более новый снимок, следующий запрос сверит версию снова
+        return s;
+    }
+
+    /**
+     * Останавливает сервер и пул потоков.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * GET /total — количество заемщиков и общая сумма кредитов.
+     */
+    private void handleTotal(HttpExchange exchange) throws IOException {
+        if (!checkMethod(exchange, "GET")) return;
+        PortfolioSnapshot s = current();
+        reply(exchange, 200, s.size() + " " + money(s.getTotal()) + "\n");
+    }
+
+    /**
+     * GET /borrower?id=N или ?name=Фамилия — поиск заемщика.
+     */
+    private void handleBorrower(HttpExchange exchange) throws IOException {
+        if (!checkMethod(exchange, "GET")) return;
+        Map<String, String> params = query(exchange);
+        PortfolioSnapshot s = current();
+        StringBuilder body = new StringBuilder();
+        if (params.containsKey("id")) {
+            Integer id = parseId(params.get("id"));
+            if (id == null) {
+                reply(exchange, 400, "Неверный номер\n");
+                return;
+            }
+            int i = s.indexOf(id);
+            if (i >= 0) appendLine(body, s, i);
+        } else if (params.containsKey("name")) {
+            for (int i : s.indexesOf(params.get("name"))) appendLine(body, s, i);
+        } else {
+            reply(exchange, 400, "Нужен параметр id или name\n");
+            return;
+        }
+        if (body.length() == 0) reply(exchange, 404, "Заемщик не найден\n");
+        else reply(exchange, 200, body.toString());
+    }
+
+    /**
+     * GET /inflow?year=Г — поступления по месяцам года.
+     */
+    private void handleInflow(HttpExchange exchange) throws IOException {
+        if (!checkMethod(exchange, "GET")) return;
+        Integer year = parseId(query(exchange).get("year"));
+        if (year == null || year < 1 || year > 9999) {
+            reply(exchange, 400, "Нужен параметр year\n");
+            return;
+        }
+        CashFlowRollup cashFlow = org.getCashFlow();
+        StringBuilder body = new StringBuilder();
+        for (int m = 1; m <= 12; m++) {
+            YearMonth month = YearMonth.of(year, m);
+            long count = cashFlow.monthCount(month);
+            if (count > 0) body.append(month).append(' ').append(count).append(' ')
+                    .append(money(cashFlow.monthSum(month))).append('\n');
+        }
+        body.append(year).append(' ').append(cashFlow.yearCount(year)).append(' ')
+                .append(money(cashFlow.yearSum(year))).append('\n');
+        reply(exchange, 200, body.toString());
+    }
+
+    /**
+     * POST /payment?id=N&date=ГГГГ-ММ-ДД&amount=X — внесение платежа.
+     */
+    private void handlePayment(HttpExchange exchange) throws IOException {
+        if (!checkMethod(exchange, "POST")) return;
+        Map<String, String> params = query(exchange);
+        Integer id = parseId(params.get("id"));
+        LocalDate date;
+        double amount;
+        try {
+            date = LocalDate.parse(params.getOrDefault("date", ""));
+            amount = Double.parseDouble(params.getOrDefault("amount", ""));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            date = null;
+            amount = Double.NaN;
+        }
+        if (id == null || date == null || !(amount > 0) || Double.isInfinite(amount)) {
+            reply(exchange, 400, "Неверные параметры платежа\n");
+            return;
+        }
+
+        BorrowerQueue queue = org.getBorrowers();
+        String line;
+        synchronized (queue) {  // Платёж и публикация снимка — одна операция для других писателей
+            Borrower b = queue.findById(id);
+            if (b == null) {
+                line = null;
+            } else {
+                PortfolioSnapshot s = current();  // Снимок до платежа (с учётом изменений в обход сервера)
+                b.addPayment(new Payment(date, amount));
+                if (s.indexOf(id) < 0) snapshot = PortfolioSnapshot.of(queue);  // Заемщика нет в снимке — строим заново
+                else snapshot = s.withTotal(id, b.getLoanAmount(), queue.version());
+                line = b.getId() + " " + b.getLastName() + " " + money(b.getLoanAmount()) + "\n";
+            }
+        }
+        if (line == null) reply(exchange, 404, "Заемщик не найден\n");
+        else reply(exchange, 200, line);
+    }
+
+    /**
+     * Проверяет метод запроса; при несовпадении отвечает 405.
+     */
+    private static boolean checkMethod(HttpExchange exchange, String method) throws IOException {
+        if (method.equals(exchange.getRequestMethod())) return true;
+        exchange.getResponseHeaders().set("Allow", method);
+        reply(exchange, 405, "Метод не поддерживается\n");
+        return false;
+    }
+
+    /**
+     * Разбирает строку запроса в пары имя=значение.
+     */
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static Integer parseId(String value) {
+        if (value == null) return null;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void appendLine(StringBuilder body, PortfolioSnapshot s, int i) {
+        body.append(s.getId(i)).append(' ').append(s.getLastName(i)).append(' ')
+                .append(money(s.getTotal(i))).append('\n');
+    }
+
+    private static String money(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    /**
+     * Отправляет текстовый ответ и закрывает обмен.
+     */
+    private static void reply(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Запуск сервера из командной строки: CreditServer файл [порт] [потоки].
+     * Файл может быть текстовым, сжатым архивом (*.gz) или каталогом хранилища по частям.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Использование: CreditServer файл [порт] [потоки]");
+            return;
+        }
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors() * 4;
+
+        CreditOrganization org = new CreditOrganization(1_000_000);
+        String file = args[0];
+        if (new File(file).isDirectory()) org.loadSegmented(file);
+        else if (PortfolioArchive.isCompressed(file)) org.loadCompressed(file);
+        else org.load(file);
+
+        CreditServer server = new CreditServer(org, port, threads);
+        server.start();
+        System.out.println("Сервер запущен: http://localhost:" + server.getPort()
+                + " (заемщиков: " + org.getBorrowers().getSize() + ")");
+    }
+}
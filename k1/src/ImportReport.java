@@ -0,0 +1,98 @@
+/**
+ * Класс ImportReport — итог импорта файла платежей (см. PaymentImporter):
+ * сколько строк прочитано, сколько платежей внесено и сколько строк отклонено по каждой причине.
+ * Сами отклонённые строки записываются импортом в отдельный файл отчёта.
+ */
+public class ImportReport {
+
+    // Причины отклонения строки
+    public static final int FORMAT = 1;       // Не три поля "Ключ Дата Сумма"
+    public static final int DATE = 2;         // Дата не в формате ГГГГ-ММ-ДД
+    public static final int AMOUNT = 3;       // Сумма не десятичное число или не больше нуля
+    public static final int BORROWER = 4;     // Заемщик с таким номером или фамилией не найден
+    public static final int DUPLICATE = 5;    // Такой платёж уже есть у заемщика или встречался в файле
+    static final int REASONS = 6;
+
+    private static final String[] NAMES = {"", "формат", "дата", "сумма", "заемщик", "дубликат"};
+
+    // Количество строк платежей в файле
+    private final long rows;
+    // Количество внесённых платежей
+    private final long applied;
+    // Количество отклонённых строк по причинам (индекс — причина)
+    private final long[] rejected;
+    // Длительность импорта
+    private final long elapsedMillis;
+
+    ImportReport(long rows, long applied, long[] rejected, long elapsedMillis) {
+        this.rows = rows;
+        this.applied = applied;
+        this.rejected = rejected.clone();
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Возвращает название причины отклонения.
+     * @param reason причина (FORMAT, DATE, AMOUNT, BORROWER или DUPLICATE)
+     * @return название причины
+     */
+    public static String reasonName(int reason) {
+        return NAMES[reason];
+    }
+
+    /**
+     * Возвращает количество строк платежей в файле.
+     * @return число строк
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Возвращает количество внесённых платежей.
+     * @return число платежей
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * Возвращает количество строк, отклонённых по указанной причине.
+     * @param reason причина
+     * @return число строк
+     */
+    public long getRejected(int reason) {
+        return rejected[reason];
+    }
+
+    /**
+     * Возвращает общее количество отклонённых строк.
+     * @return число строк
+     */
+    public long getRejected() {
+        long sum = 0;
+        for (long r : rejected) {
+            sum += r;
+        }
+        return sum;
+    }
+
+    /**
+     * Возвращает длительность импорта.
+     * @return миллисекунды
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("строк: ").append(rows).append(", внесено: ").append(applied)
+                .append(", отклонено: ").append(getRejected());
+        for (int r = 1; r < REASONS; r++) {
+            if (rejected[r] > 0) sb.append(", ").append(NAMES[r]).append(": ").append(rejected[r]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Класс LazyPaymentSource — ссылка на участок секции [ПЛАТЕЖИ] в файле,
+ * в котором лежат платежи одного заемщика.
+ * Хранит только смещения в байтах, а сами платежи читаются при первом обращении к списку.
+ */
+class LazyPaymentSource {
+
+    // Файл, из которого была загружена очередь
+    private final String filename;
+    // Номер заемщика, по которому отбираются строки внутри участка
+    private final int id;
+    // Фамилия, по которой отбираются строки файла старого формата (null — строки записаны по номеру)
+    private final String lastName;
+    // Смещение первой строки участка (включительно)
+    private final long start;
+    // Смещение конца последней строки участка (не включительно)
+    private final long end;
+    // Платежи, прочитанные списком при загрузке: снимки, сделанные до загрузки списка,
+    // берут их отсюда, а не из файла, который к тому времени мог быть перезаписан
+    private volatile PaymentSnapshot loaded;
+
+    private LazyPaymentSource(String filename, int id, String lastName, long start, long end) {
+        this.filename = filename;
+        this.id = id;
+        this.lastName = lastName;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Создаёт ссылку на участок, строки которого начинаются с номера заемщика.
+     * @param filename имя файла
+     * @param id       номер заемщика
+     * @param start    смещение начала участка в байтах
+     * @param end      смещение конца участка в байтах
+     * @return ссылка на участок
+     */
+    static LazyPaymentSource byId(String filename, int id, long start, long end) {
+        return new LazyPaymentSource(filename, id, null, start, end);
+    }
+
+    /**
+     * Создаёт ссылку на участок файла старого формата, строки которого начинаются с фамилии.
+     * @param filename имя файла
+     * @param lastName фамилия заемщика
+     * @param start    смещение начала участка в байтах
+     * @param end      смещение конца участка в байтах
+     * @return ссылка на участок
+     */
+    static LazyPaymentSource byLastName(String filename, String lastName, long start, long end) {
+        return new LazyPaymentSource(filename, -1, lastName, start, end);
+    }
+
+    /**
+     * Возвращает имя файла, из которого читается участок.
+     * @return имя файла
+     */
+    String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Запоминает платежи, прочитанные из участка списком.
+     * @param payments снимок списка сразу после загрузки
+     */
+    void setLoaded(PaymentSnapshot payments) {
+        this.loaded = payments;
+    }
+
+    /**
+     * Возвращает платежи, уже прочитанные из участка списком.
+     * @return снимок списка сразу после загрузки или null, если список ещё не загружен
+     */
+    PaymentSnapshot getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Читает участок файла и добавляет найденные платежи в список.
+     * Если строки заемщика в файле шли не подряд, участок охватывает и чужие строки —
+     * они отбрасываются сравнением ключа.
+     * @param list список, в который добавляются платежи
+     * @throws IOException если файл недоступен или был изменён после индексации
+     */
+    void loadInto(PaymentList list) throws IOException {
+        byte[] buffer = new byte[(int) (end - start)];
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            file.seek(start);
+            file.readFully(buffer);
+        }
+
+        // Кодировка та же, что у FileWriter в BorrowerQueue.saveToFile
+        String text = new String(buffer, Charset.defaultCharset());
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        for (String line : text.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            int sp1 = line.indexOf(' ');
+            int sp2 = (sp1 < 0) ? -1 : line.indexOf(' ', sp1 + 1);
+            if (sp2 < 0 || !keyMatches(line, sp1)) continue;
+
+            LocalDate date = LocalDate.parse(line.substring(sp1 + 1, sp2), fmt);
+            double amount = Double.parseDouble(line.substring(sp2 + 1));
+            list.add(new Payment(date, amount));
+        }
+    }
+
+    /**
+     * Проверяет, принадлежит ли строка платежа заемщику участка, по ключу в её начале.
+     */
+    private boolean keyMatches(String line, int keyEnd) {
+        if (lastName != null) return keyEnd == lastName.length() && line.startsWith(lastName);
+        try {
+            return Integer.parseInt(line, 0, keyEnd, 10) == id;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.time.LocalDate;
+import java.time.YearMonth;
 
 /**
  * Заготовка для курсового проекта по ООП.
@@ -99,6 +100,49 @@ public class Main {
         System.out.println("=== ТЕСТ 5: Финальное сохранение состояния ===");
 
         saveAndLoadCreditOrg(org, "credits3.txt");
+        System.out.println();
+
+        // =====================================================================
+        // === ТЕСТ 6: Проверка просрочек по графику погашения ===
+        // =====================================================================
+        System.out.println("=== ТЕСТ 6: Проверка просрочек по графику погашения ===");
+
+        // Ежемесячные взносы по 10000 с 10 января 2025 года, всего 5 взносов
+        RepaymentSchedule schedule = RepaymentSchedule.monthly(LocalDate.of(2025, 1, 10), 5, 10000);
+        try {
+            OverdueReport report = org.findOverdue(LocalDate.of(2025, 4, 20), b -> schedule);
+            System.out.println("Проверено заемщиков: " + report.getProcessed() + " из " + report.getTotal());
+            for (int i = 0; i < report.getFlaggedCount(); i++) {
+                System.out.println("⚠ " + report.getBorrower(i).getLastName()
+                        + ": задолженность " + report.getArrears(i)
+                        + ", дней просрочки " + report.getDaysOverdue(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println();
+
+        // =====================================================================
+        // === ТЕСТ 7: Крупнейшие заемщики и процентили долга ===
+        // =====================================================================
+        System.out.println("=== ТЕСТ 7: Крупнейшие заемщики ===");
+
+        for (Borrower b : org.topBorrowers(3)) {
+            System.out.println(org.balanceRank(b.getId()) + ". " + b.getLastName() + ": " + b.getLoanAmount());
+        }
+        System.out.println("Медиана долга: " + org.balancePercentile(50));
+        System.out.println();
+
+        // =====================================================================
+        // === ТЕСТ 8: Поступления по месяцам и годам ===
+        // =====================================================================
+        System.out.println("=== ТЕСТ 8: Поступления по месяцам ===");
+
+        CashFlowRollup cashFlow = org.getCashFlow();
+        for (YearMonth month : cashFlow.months()) {
+            System.out.println(month + ": " + cashFlow.monthSum(month) + " (платежей: " + cashFlow.monthCount(month) + ")");
+        }
+        System.out.println("Итого за 2025 год: " + org.yearlyInflow(2025));
     }
 
     /**
@@ -0,0 +1,134 @@
+/**
+ * Класс NameDictionary — словарь фамилий, сопоставляющий каждой различной фамилии
+ * компактный целочисленный идентификатор (0, 1, 2, ...).
+ * Одинаковые фамилии хранятся в памяти в единственном экземпляре, а сравнение
+ * и хеширование фамилий в очереди и загрузчике сводится к операциям над int.
+ * Хеш-таблица с открытой адресацией хранится в массиве int, чтобы не заводить объект на каждую фамилию.
+ * Словарь свой у каждой очереди заемщиков (см. BorrowerQueue): идентификаторы не освобождаются,
+ * пока очередь не загрузит новое содержимое и не заменит словарь, а независимые очереди
+ * и шарды не делят общего изменяемого состояния.
+ */
+public class NameDictionary {
+
+    // Фамилии по их идентификатору
+    private String[] names;
+    // Хеш-таблица: ячейка хранит id + 1 (0 — пустая ячейка)
+    private int[] table;
+    // Количество зарегистрированных фамилий
+    private int size;
+
+    /**
+     * Конструктор: создаёт пустой словарь.
+     */
+    public NameDictionary() {
+        this.names = new String[16];
+        this.table = new int[32];
+        this.size = 0;
+    }
+
+    /**
+     * Регистрирует фамилию в словаре (если её ещё нет) и возвращает её идентификатор.
+     * @param name фамилия
+     * @return идентификатор фамилии
+     */
+    public synchronized int intern(String name) {
+        int id = idOf(name, 0, name.length());
+        if (id >= 0) return id;
+
+        // Расширяем таблицу, если она заполнена более чем наполовину
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        if (size == names.length) {
+            String[] grown = new String[names.length * 2];
+            System.arraycopy(names, 0, grown, 0, size);
+            names = grown;
+        }
+
+        id = size++;
+        names[id] = name;
+        insert(hash(name, 0, name.length()), id);
+        return id;
+    }
+
+    /**
+     * Ищет идентификатор фамилии, не регистрируя её.
+     * @param name фамилия
+     * @return идентификатор или -1, если такой фамилии нет
+     */
+    public int idOf(String name) {
+        return idOf(name, 0, name.length());
+    }
+
+    /**
+     * Ищет идентификатор фамилии, записанной в участке строки [from, to).
+     * Не создаёт подстроку — используется загрузчиком при разборе строк файла.
+     * @param line строка, содержащая фамилию
+     * @param from начало фамилии (включительно)
+     * @param to   конец фамилии (не включительно)
+     * @return идентификатор или -1, если такой фамилии нет
+     */
+    public synchronized int idOf(String line, int from, int to) {
+        int mask = table.length - 1;
+        int slot = hash(line, from, to) & mask;
+        while (table[slot] != 0) {
+            String candidate = names[table[slot] - 1];
+            if (candidate.length() == to - from && candidate.regionMatches(0, line, from, to - from)) {
+                return table[slot] - 1;
+            }
+            slot = (slot + 1) & mask;  // Линейное пробирование
+        }
+        return -1;
+    }
+
+    /**
+     * Возвращает фамилию по идентификатору.
+     * @param id идентификатор фамилии
+     * @return фамилия
+     */
+    public synchronized String nameOf(int id) {
+        return names[id];
+    }
+
+    /**
+     * Возвращает количество зарегистрированных фамилий.
+     * Все идентификаторы лежат в диапазоне от 0 до size-1.
+     * @return число фамилий
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Вычисляет хеш участка строки (совпадает с String.hashCode для подстроки).
+     */
+    private static int hash(String s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);  // Перемешиваем старшие биты в младшие
+    }
+
+    /**
+     * Помещает идентификатор в первую свободную ячейку, начиная с позиции хеша.
+     */
+    private void insert(int hash, int id) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    /**
+     * Перестраивает хеш-таблицу под новый размер (степень двойки).
+     */
+    private void rehash(int newLength) {
+        table = new int[newLength];
+        for (int id = 0; id < size; id++) {
+            insert(hash(names[id], 0, names[id].length()), id);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Класс OverdueEngine — ночная проверка просрочек: сравнивает фактические платежи
+ * каждого заемщика с его графиком погашения и отмечает заемщиков с задолженностью.
+ *
+ * Заемщики обрабатываются параллельно пачками фиксированного размера. Платежи заемщика
+ * уже упорядочены по дате, поэтому список платежей и график сливаются за один проход
+ * без создания объектов на каждый платёж. Если отведённое время истекло, необработанные
+ * пачки пропускаются, а отчёт помечается как неполный.
+ * Рабочие потоки читают платежи из снимка очереди (BorrowerQueue.snapshot), а не из живых списков:
+ * проверка не мешает тем, кто продолжает вносить платежи, и видит согласованное состояние.
+ */
+public class OverdueEngine {
+
+    // Количество заемщиков в одной пачке (единица распределения работы между потоками)
+    private static final int CHUNK = 4096;
+    // Допустимая погрешность при сравнении денежных сумм
+    private static final double TOLERANCE = 0.005;
+
+    // Количество рабочих потоков
+    private final int parallelism;
+    // Ограничение времени на весь прогон, в миллисекундах
+    private final long timeBudgetMillis;
+    // Льготный период: просрочка меньше этого числа дней не считается
+    private final int graceDays;
+
+    /**
+     * Конструктор движка проверки просрочек.
+     * @param parallelism      количество рабочих потоков (не меньше 1)
+     * @param timeBudgetMillis ограничение времени на прогон в миллисекундах (0 — без ограничения)
+     * @param graceDays        льготный период в днях
+     */
+    public OverdueEngine(int parallelism, long timeBudgetMillis, int graceDays) {
+        this.parallelism = Math.max(parallelism, 1);
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.graceDays = graceDays;
+    }
+
+    /**
+     * Выполняет проверку всех заемщиков очереди на указанную дату.
+     * @param queue     очередь заемщиков
+     * @param asOf      дата, на которую проверяется задолженность
+     * @param schedules график погашения для каждого заемщика (null — у заемщика нет графика)
+     * @return отчёт о просрочках
+     * @throws InterruptedException если поток был прерван во время ожидания рабочих потоков
+     */
+    public OverdueReport run(BorrowerQueue queue, LocalDate asOf,
+                             Function<Borrower, RepaymentSchedule> schedules) throws InterruptedException {
+        long started = System.nanoTime();
+        boolean limited = timeBudgetMillis > 0;
+        long deadline = started + (limited ? timeBudgetMillis * 1_000_000L : 0);
+
+        // Фиксируем состав очереди и состояние заемщиков на момент запуска
+        Borrower[] borrowers;
+        QueueSnapshot snapshot;
+        synchronized (queue) {
+            borrowers = queue.toArray();
+            snapshot = queue.snapshot();
+        }
+        int n = borrowers.length;
+        double[] arrears = new double[n];
+        int[] daysOverdue = new int[n];
+        int[] lateInstallments = new int[n];
+
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+        long asOfDay = asOf.toEpochDay();
+
+        // Каждый поток берёт очередную пачку, пока пачки и время не закончатся
+        Callable<Void> worker = () -> {
+            int c;
+            while ((c = nextChunk.getAndIncrement()) < chunks) {
+                if (limited && System.nanoTime() - deadline > 0) break;
+                int from = c * CHUNK, to = Math.min(from + CHUNK, n);
+                for (int i = from; i < to; i++) {
+                    RepaymentSchedule schedule = schedules.apply(borrowers[i]);
+                    if (schedule != null) {
+                        evaluate(i, snapshot.findById(borrowers[i].getId()).getPayments(), schedule, asOfDay,
+                                arrears, daysOverdue, lateInstallments);
+                    }
+                }
+                processed.addAndGet(to - from);
+            }
+            return null;
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < Math.min(parallelism, Math.max(chunks, 1)); t++) {
+                tasks.add(worker);
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    // Ошибка в рабочем потоке (например, при отложенной загрузке платежей)
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000L;
+        return new OverdueReport(borrowers, arrears, daysOverdue, lateInstallments, graceDays,
+                processed.get(), elapsedMillis);
+    }
+
+    /**
+     * Сливает упорядоченный по дате список платежей с графиком за один проход.
+     * Записывает в массивы по индексу i: сумму задолженности на дату проверки,
+     * число дней с даты самого раннего непогашенного взноса и количество взносов,
+     * к дате которых нарастающий итог платежей не дотягивал до графика.
+     */
+    private static void evaluate(int i, PaymentSnapshot payments, RepaymentSchedule schedule, long asOfDay,
+                                 double[] arrears, int[] daysOverdue, int[] lateInstallments) {
+        Iterator<Payment> it = payments.iterator();
+        Payment next = it.hasNext() ? it.next() : null;
+        double paid = 0;
+        int late = 0;
+
+        // Проходим наступившие взносы, подтягивая платежи, совершённые не позже даты взноса
+        int k = 0;
+        for (; k < schedule.size() && schedule.dueDay(k) <= asOfDay; k++) {
+            long due = schedule.dueDay(k);
+            while (next != null && next.getDate().toEpochDay() <= due) {
+                paid += next.getAmount();
+                next = it.hasNext() ? it.next() : null;
+            }
+            if (paid + TOLERANCE < schedule.cumulativeDue(k)) late++;
+        }
+        // Учитываем платежи после последнего наступившего взноса, но не позже даты проверки
+        while (next != null && next.getDate().toEpochDay() <= asOfDay) {
+            paid += next.getAmount();
+            next = it.hasNext() ? it.next() : null;
+        }
+        lateInstallments[i] = late;
+        if (k == 0) return;  // Ни один взнос ещё не наступил
+
+        double debt = schedule.cumulativeDue(k - 1) - paid;
+        if (debt <= TOLERANCE) return;
+        arrears[i] = debt;
+
+        // Платежи гасят взносы по порядку: первый непогашенный взнос — первый,
+        // нарастающий итог которого превышает выплаченное (двоичный поиск)
+        int lo = 0, hi = k - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (schedule.cumulativeDue(mid) > paid + TOLERANCE) hi = mid;
+            else lo = mid + 1;
+        }
+        daysOverdue[i] = (int) (asOfDay - schedule.dueDay(lo));
+    }
+}
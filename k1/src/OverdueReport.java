@@ -0,0 +1,126 @@
+/**
+ * Класс OverdueReport — результат прогона OverdueEngine.
+ * Содержит заемщиков с просрочкой, превышающей льготный период, в порядке очереди,
+ * а также сведения о полноте прогона.
+ */
+public class OverdueReport {
+
+    // Заемщики с просрочкой и сведения о ней (массивы одинаковой длины)
+    private final Borrower[] flagged;
+    private final double[] arrears;
+    private final int[] daysOverdue;
+    private final int[] lateInstallments;
+
+    // Сколько заемщиков было в очереди и сколько из них успели проверить
+    private final int total;
+    private final int processed;
+    // Длительность прогона
+    private final long elapsedMillis;
+
+    /**
+     * Конструктор: отбирает из результатов прогона заемщиков с просрочкой.
+     * Массивы результатов индексируются так же, как массив borrowers.
+     */
+    OverdueReport(Borrower[] borrowers, double[] arrears, int[] daysOverdue, int[] lateInstallments,
+                  int graceDays, int processed, long elapsedMillis) {
+        int count = 0;
+        for (int i = 0; i < borrowers.length; i++) {
+            if (arrears[i] > 0 && daysOverdue[i] > graceDays) count++;
+        }
+
+        this.flagged = new Borrower[count];
+        this.arrears = new double[count];
+        this.daysOverdue = new int[count];
+        this.lateInstallments = new int[count];
+        int k = 0;
+        for (int i = 0; i < borrowers.length; i++) {
+            if (arrears[i] > 0 && daysOverdue[i] > graceDays) {
+                this.flagged[k] = borrowers[i];
+                this.arrears[k] = arrears[i];
+                this.daysOverdue[k] = daysOverdue[i];
+                this.lateInstallments[k] = lateInstallments[i];
+                k++;
+            }
+        }
+
+        this.total = borrowers.length;
+        this.processed = processed;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Возвращает количество заемщиков с просрочкой.
+     * @return число отмеченных заемщиков
+     */
+    public int getFlaggedCount() {
+        return flagged.length;
+    }
+
+    /**
+     * Возвращает заемщика с просрочкой.
+     * @param k номер в отчёте (от 0 до getFlaggedCount()-1)
+     * @return заемщик
+     */
+    public Borrower getBorrower(int k) {
+        return flagged[k];
+    }
+
+    /**
+     * Возвращает сумму задолженности заемщика на дату проверки.
+     * @param k номер в отчёте
+     * @return сумма, недоплаченная по графику
+     */
+    public double getArrears(int k) {
+        return arrears[k];
+    }
+
+    /**
+     * Возвращает длительность просрочки — число дней с даты самого раннего непогашенного взноса.
+     * @param k номер в отчёте
+     * @return дней просрочки
+     */
+    public int getDaysOverdue(int k) {
+        return daysOverdue[k];
+    }
+
+    /**
+     * Возвращает количество взносов, к дате которых заемщик не внёс нужную сумму.
+     * @param k номер в отчёте
+     * @return число просроченных взносов за всю историю
+     */
+    public int getLateInstallments(int k) {
+        return lateInstallments[k];
+    }
+
+    /**
+     * Возвращает количество заемщиков в очереди на момент запуска.
+     * @return число заемщиков
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Возвращает количество проверенных заемщиков.
+     * @return число проверенных заемщиков
+     */
+    public int getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Проверяет, успел ли прогон обработать всех заемщиков в отведённое время.
+     * @return true, если проверены все заемщики
+     */
+    public boolean isComplete() {
+        return processed == total;
+    }
+
+    /**
+     * Возвращает длительность прогона.
+     * @return миллисекунды
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,417 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Класс PaymentImporter — импорт файла платежей в очередь заемщиков с проверкой каждой строки.
+ * Строка файла имеет формат секции [ПЛАТЕЖИ]: "Номер(или Фамилия) ГГГГ-ММ-ДД Сумма";
+ * если в файле есть маркеры секций (например, это сохранённый портфель), читается только [ПЛАТЕЖИ].
+ *
+ * Импорт идёт потоком, в четыре этапа:
+ * 1. чтение — строки собираются в пачки фиксированного размера;
+ * 2. разбор и проверка — пачки параллельно разбираются рабочими потоками: формат, дата,
+ *    сумма и наличие заемщика (по снимку очереди, без блокировок);
+ * 3. отсев дубликатов — пачки принимаются в порядке файла, и каждый платёж проверяется
+ *    по хеш-множеству компактных ключей (номер, день, сумма), куда заранее заносятся
+ *    имеющиеся платежи заемщика;
+ * 4. внесение — принятые платежи пачки вносятся под одной блокировкой очереди.
+ * В памяти одновременно находится лишь несколько пачек, поэтому размер файла не ограничен.
+ * Отклонённые строки с номером строки и причиной записываются в файл отчёта.
+ */
+public class PaymentImporter {
+
+    // Количество строк в одной пачке (единица распределения работы между потоками)
+    private static final int BATCH = 4096;
+
+    // Количество рабочих потоков
+    private final int parallelism;
+
+    /**
+     * Конструктор импорта.
+     * @param parallelism количество потоков разбора (не меньше 1)
+     */
+    public PaymentImporter(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Импортирует платежи из файла в очередь.
+     * Заемщик с фамилией из строки — заемщик с наименьшим номером среди носящих эту фамилию.
+     * Дубликатом считается платёж с теми же заемщиком, датой и суммой, что у платежа,
+     * бывшего у заемщика к началу импорта или принятого из файла раньше.
+     * @param queue       очередь заемщиков
+     * @param filename    файл платежей
+     * @param rejectsFile файл отчёта об отклонённых строках (null — не записывать)
+     * @return итог импорта
+     * @throws IOException          если не удалось прочитать файл или записать отчёт
+     * @throws InterruptedException если поток был прерван во время ожидания рабочих потоков
+     */
+    public ImportReport run(BorrowerQueue queue, String filename, String rejectsFile)
+            throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Import state = new Import(queue);
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename));
+             PrintWriter rejects = (rejectsFile != null) ? new PrintWriter(new FileWriter(rejectsFile)) : null) {
+            if (rejects != null) rejects.println("Строка\tПричина\tСодержимое");
+
+            // Пачки в работе, в порядке файла; их не больше двух на поток
+            ArrayDeque<Future<Batch>> pending = new ArrayDeque<>();
+            Batch batch = new Batch();
+            boolean inPayments = true;  // До первого маркера секции все строки — платежи
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty()) continue;
+                if (trimmed.equals("[ЗАЕМЩИКИ]") || trimmed.equals("[ОБОРОТЫ]") || trimmed.equals("[ПЛАТЕЖИ]")) {
+                    inPayments = trimmed.equals("[ПЛАТЕЖИ]");
+                    continue;
+                }
+                if (!inPayments) continue;
+
+                batch.add(trimmed, lineNumber);
+                if (batch.size == BATCH) {
+                    Batch full = batch;
+                    pending.add(pool.submit(() -> state.parse(full)));
+                    if (pending.size() >= parallelism * 2) state.accept(await(pending.poll()), rejects);
+                    batch = new Batch();
+                }
+            }
+            if (batch.size > 0) {
+                Batch last = batch;
+                pending.add(pool.submit(() -> state.parse(last)));
+            }
+            while (!pending.isEmpty()) {
+                state.accept(await(pending.poll()), rejects);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000L;
+        return new ImportReport(state.rows, state.applied, state.rejected, elapsedMillis);
+    }
+
+    /**
+     * Дожидается разбора пачки.
+     */
+    private static Batch await(Future<Batch> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Пачка строк и результаты их разбора (массивы по номеру строки в пачке).
+     */
+    private static final class Batch {
+        final String[] lines = new String[BATCH];
+        final long[] numbers = new long[BATCH];
+        final int[] ids = new int[BATCH];
+        final long[] days = new long[BATCH];
+        final double[] amounts = new double[BATCH];
+        final int[] reasons = new int[BATCH];  // 0 — строка принята
+        int size;
+
+        void add(String line, long number) {
+            lines[size] = line;
+            numbers[size] = number;
+            size++;
+        }
+    }
+
+    /**
+     * Состояние одного импорта: снимок очереди для проверки, множество ключей и счётчики.
+     */
+    private static final class Import {
+
+        private final BorrowerQueue queue;
+        private final QueueSnapshot snapshot;
+        // Номер заемщика по номеру фамилии в словаре (-1 — фамилии нет в очереди)
+        private final int[] firstByName;
+        // Заемщики, платежи которых уже занесены в множество ключей
+        private final boolean[] seeded;
+        private final KeySet seen = new KeySet();
+        // Номер последней пачки, в которой заемщику внесён платёж
+        private final int[] lastBatch;
+        private int batchNumber;
+
+        long rows;
+        long applied;
+        final long[] rejected = new long[ImportReport.REASONS];
+
+        Import(BorrowerQueue queue) {
+            this.queue = queue;
+            this.snapshot = queue.snapshot();
+            this.seeded = new boolean[queue.idLimit()];  // Номера снимка меньше этой границы
+            this.lastBatch = new int[seeded.length];
+            int[] byName = new int[snapshot.names().size()];
+            Arrays.fill(byName, -1);
+            for (BorrowerSnapshot b : snapshot.toArray()) {  // По возрастанию номеров
+                if (byName[b.getNameId()] < 0) byName[b.getNameId()] = b.getId();
+            }
+            this.firstByName = byName;
+        }
+
+        /**
+         * Этап 2: разбирает и проверяет строки пачки (выполняется в рабочем потоке).
+         */
+        Batch parse(Batch batch) {
+            String prevKey = null;
+            int prevId = -1;
+            for (int i = 0; i < batch.size; i++) {
+                String line = batch.lines[i];
+                int sp1 = line.indexOf(' ');
+                int sp2 = (sp1 < 0) ? -1 : line.indexOf(' ', sp1 + 1);
+                if (sp2 < 0 || sp2 == sp1 + 1 || sp2 == line.length() - 1 || line.indexOf(' ', sp2 + 1) >= 0) {
+                    batch.reasons[i] = ImportReport.FORMAT;
+                    continue;
+                }
+                long day = parseDay(line, sp1 + 1, sp2);
+                if (day == Long.MIN_VALUE) {
+                    batch.reasons[i] = ImportReport.DATE;
+                    continue;
+                }
+                batch.days[i] = day;
+                double amount = Double.NaN;
+                if (isDecimal(line, sp2 + 1, line.length())) {  // parseDouble принял бы и 0x1p3, и 8d
+                    amount = Double.parseDouble(line.substring(sp2 + 1));
+                }
+                if (!(amount > 0) || Double.isInfinite(amount)) {
+                    batch.reasons[i] = ImportReport.AMOUNT;
+                    continue;
+                }
+                batch.amounts[i] = amount;
+
+                // Строки одного заемщика обычно идут подряд — ключ разрешается при его смене
+                String key = line.substring(0, sp1);
+                if (!key.equals(prevKey)) {
+                    prevKey = key;
+                    prevId = resolve(key);
+                }
+                if (prevId < 0) {
+                    batch.reasons[i] = ImportReport.BORROWER;
+                    continue;
+                }
+                batch.ids[i] = prevId;
+            }
+            return batch;
+        }
+
+        /**
+         * Разбирает дату ГГГГ-ММ-ДД из участка строки без промежуточных объектов.
+         * Несуществующие даты (например, 2025-02-30) отклоняются, а не округляются.
+         * @return номер дня (LocalDate.toEpochDay) или Long.MIN_VALUE, если дата неверна
+         */
+        private static long parseDay(String s, int from, int to) {
+            if (to - from != 10 || s.charAt(from + 4) != '-' || s.charAt(from + 7) != '-') return Long.MIN_VALUE;
+            int year = digits(s, from, from + 4);
+            int month = digits(s, from + 5, from + 7);
+            int day = digits(s, from + 8, from + 10);
+            if (year < 0 || month < 0 || day < 0) return Long.MIN_VALUE;
+            try {
+                return LocalDate.of(year, month, day).toEpochDay();
+            } catch (DateTimeException e) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * Проверяет, что участок записан десятичным числом в том виде, в каком суммы пишет сохранение:
+         * цифры, необязательная дробная часть ".цифры" и необязательный порядок "E[-+]цифры".
+         */
+        private static boolean isDecimal(String s, int from, int to) {
+            int i = skipDigits(s, from, to);
+            if (i == from) return false;
+            if (i < to && s.charAt(i) == '.') {
+                int start = ++i;
+                i = skipDigits(s, i, to);
+                if (i == start) return false;
+            }
+            if (i < to && (s.charAt(i) == 'E' || s.charAt(i) == 'e')) {
+                i++;
+                if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+                int start = i;
+                i = skipDigits(s, i, to);
+                if (i == start) return false;
+            }
+            return i == to;
+        }
+
+        /**
+         * Возвращает позицию первого символа участка, не являющегося цифрой.
+         */
+        private static int skipDigits(String s, int from, int to) {
+            while (from < to && s.charAt(from) >= '0' && s.charAt(from) <= '9') from++;
+            return from;
+        }
+
+        /**
+         * Переводит участок из цифр в число.
+         * @return число или -1, если в участке есть не только цифры
+         */
+        private static int digits(String s, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char ch = s.charAt(i);
+                if (ch < '0' || ch > '9') return -1;
+                value = value * 10 + (ch - '0');
+            }
+            return value;
+        }
+
+        /**
+         * Находит номер заемщика по ключу строки — номеру или фамилии.
+         * @return номер заемщика или -1, если в снимке такого нет
+         */
+        private int resolve(String key) {
+            if (isNumber(key)) {
+                int id = Integer.parseInt(key);
+                return (snapshot.findById(id) != null) ? id : -1;
+            }
+            int nameId = snapshot.names().idOf(key);
+            return (nameId >= 0 && nameId < firstByName.length) ? firstByName[nameId] : -1;
+        }
+
+        /**
+         * Этапы 3 и 4: отсеивает дубликаты, вносит принятые платежи и записывает отклонённые строки.
+         * Пачки передаются сюда строго в порядке файла.
+         */
+        void accept(Batch batch, PrintWriter rejects) {
+            for (int i = 0; i < batch.size; i++) {
+                if (batch.reasons[i] != 0) continue;
+                int id = batch.ids[i];
+                if (!seeded[id]) {
+                    seeded[id] = true;
+                    for (Payment p : snapshot.findById(id).getPayments()) {
+                        seen.add(id, p.getDate().toEpochDay(), p.getAmount());
+                    }
+                }
+                if (!seen.add(id, batch.days[i], batch.amounts[i])) batch.reasons[i] = ImportReport.DUPLICATE;
+            }
+
+            // Индексы очереди обновляются один раз на заемщика пачки, а не на каждый платёж
+            Borrower[] touched = new Borrower[batch.size];
+            int touchedCount = 0;
+            batchNumber++;
+            synchronized (queue) {
+                queue.beginBulkLoad();
+                try {
+                    for (int i = 0; i < batch.size; i++) {
+                        if (batch.reasons[i] != 0) continue;
+                        Borrower b = queue.findById(batch.ids[i]);
+                        if (b == null) {  // Заемщик удалён после начала импорта
+                            batch.reasons[i] = ImportReport.BORROWER;
+                            continue;
+                        }
+                        b.addPayment(new Payment(LocalDate.ofEpochDay(batch.days[i]), batch.amounts[i]));
+                        applied++;
+                        if (lastBatch[batch.ids[i]] != batchNumber) {
+                            lastBatch[batch.ids[i]] = batchNumber;
+                            touched[touchedCount++] = b;
+                        }
+                    }
+                } finally {
+                    queue.endBulkUpdate(touched, touchedCount);
+                }
+            }
+
+            rows += batch.size;
+            for (int i = 0; i < batch.size; i++) {
+                int reason = batch.reasons[i];
+                if (reason == 0) continue;
+                rejected[reason]++;
+                if (rejects != null) {
+                    rejects.print(batch.numbers[i]);
+                    rejects.print('\t');
+                    rejects.print(ImportReport.reasonName(reason));
+                    rejects.print('\t');
+                    rejects.println(batch.lines[i]);
+                }
+            }
+        }
+
+        private static boolean isNumber(String s) {
+            if (s.isEmpty() || s.length() > 9) return false;  // Номер помещается в int
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                if (ch < '0' || ch > '9') return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Хеш-множество ключей платежей (номер заемщика, день, сумма) с открытой адресацией.
+     * Ключ занимает два long: номер и день упакованы в первый, биты суммы — во второй.
+     */
+    private static final class KeySet {
+
+        private long[] first = new long[1 << 12];
+        private long[] second = new long[1 << 12];
+        private boolean[] used = new boolean[1 << 12];
+        private int size;
+
+        /**
+         * Добавляет ключ.
+         * @return true, если ключа не было в множестве
+         */
+        boolean add(int id, long day, double amount) {
+            long a = ((long) id << 32) | (day & 0xFFFFFFFFL);
+            long b = Double.doubleToLongBits(amount);
+            if (size * 2 >= used.length) grow();
+            int mask = used.length - 1;
+            int i = hash(a, b) & mask;
+            while (used[i]) {
+                if (first[i] == a && second[i] == b) return false;
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            first[i] = a;
+            second[i] = b;
+            size++;
+            return true;
+        }
+
+        private static int hash(long a, long b) {
+            long h = a * 0x9E3779B97F4A7C15L ^ b;
+            h ^= h >>> 32;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 29;
+            return (int) h;
+        }
+
+        private void grow() {
+            long[] oldFirst = first, oldSecond = second;
+            boolean[] oldUsed = used;
+            first = new long[oldUsed.length * 2];
+            second = new long[oldUsed.length * 2];
+            used = new boolean[oldUsed.length * 2];
+            int mask = used.length - 1;
+            for (int j = 0; j < oldUsed.length; j++) {
+                if (!oldUsed[j]) continue;
+                int i = hash(oldFirst[j], oldSecond[j]) & mask;
+                while (used[i]) i = (i + 1) & mask;
+                used[i] = true;
+                first[i] = oldFirst[j];
+                second[i] = oldSecond[j];
+            }
+        }
+    }
+}
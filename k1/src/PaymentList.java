@@ -1,20 +1,129 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 
 /**
  * Класс PaymentList представляет собой упорядоченный односвязный список платежей.
  * Платежи хранятся в порядке возрастания даты (от самых ранних к самым поздним).
  * Обеспечивает операции добавления, удаления, поиска, вычисления общей суммы и вывода.
+ *
+ * Узлы списка не меняются после того, как стали его частью, за одним исключением: платёж,
+ * более поздний, чем все имеющиеся, дописывается за последним узлом за O(1). Вставка в середину
+ * и удаление копируют узлы от головы до места изменения и переиспользуют оставшийся хвост.
+ * Поэтому снимок списка (snapshot) — это просто голова и количество узлов, и берётся он за O(1).
  */
 public class PaymentList {
 
     // Указатель на первый узел списка (голова). Если null — список пуст.
     private PaymentNode head;
+    // Последний узел списка (для дописывания платежей за O(1))
+    private PaymentNode tail;
+    // Количество платежей в списке
+    private int count;
+    // Сумма платежей: совпадает с суммой, накопленной обходом от головы (см. totalSum)
+    private double total;
+
+    // Источник отложенной загрузки платежей. Если null — платежи уже в памяти.
+    private LazyPaymentSource source;
+
+    // Сумма платежей, известная из секции [ЗАЕМЩИКИ] до загрузки самих платежей
+    private double pendingTotal;
+
+    // Заемщик, которому принадлежит список (получает уведомления об изменениях)
+    private Borrower owner;
+    // true, пока платежи читаются из файла — такие добавления не считаются изменениями
+    private boolean loading;
 
     /**
      * Конструктор: создаёт пустой список платежей.
      */
     public PaymentList() {
         this.head = null;
+        this.tail = null;
+        this.count = 0;
+        this.total = 0;
+    }
+
+    /**
+     * Назначает заемщика-владельца списка.
+     * @param owner заемщик, которому сообщается об изменении списка
+     */
+    void setOwner(Borrower owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Сообщает владельцу об изменении списка.
+     * @param added   добавленный платёж (или null)
+     * @param removed удалённый платёж (или null)
+     */
+    private void changed(Payment added, Payment removed) {
+        if (owner != null && !loading) owner.paymentsChanged(added, removed);
+    }
+
+    /**
+     * Подключает источник отложенной загрузки: платежи будут прочитаны из файла
+     * при первом обращении к списку.
+     * @param source       участок файла с платежами
+     * @param knownTotal   сумма платежей, записанная в файле (до загрузки отдаётся totalSum)
+     */
+    void attachSource(LazyPaymentSource source, double knownTotal) {
+        this.head = null;
+        this.tail = null;
+        this.count = 0;
+        this.total = 0;
+        this.source = source;
+        this.pendingTotal = knownTotal;
+    }
+
+    /**
+     * Проверяет, загружены ли платежи в память.
+     * @return true, если список не ожидает отложенной загрузки
+     */
+    public boolean isLoaded() {
+        return source == null;
+    }
+
+    /**
+     * Загружает платежи из файла, если список ещё не был загружен.
+     * Ошибка чтения пробрасывается как UncheckedIOException, т.к. обращение
+     * к списку происходит из методов, не объявляющих IOException.
+     */
+    private void ensureLoaded() {
+        if (source == null) return;
+        LazyPaymentSource s = source;
+        source = null;  // Сбрасываем до чтения, чтобы add() не зациклился
+        loading = true;
+        try {
+            s.loadInto(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось загрузить платежи из файла", e);
+        } finally {
+            loading = false;
+        }
+        s.setLoaded(new PaymentSnapshot(head, count, total));  // Для снимков, сделанных до загрузки
+        // Сумма, накопленная при чтении, может отличаться от записанной в файле в последних знаках
+        if (owner != null) owner.paymentsLoaded();
+    }
+
+    /**
+     * Возвращает файл, из которого платежи ещё не прочитаны.
+     * @return имя файла или null, если платежи уже в памяти
+     */
+    String pendingFilename() {
+        return (source == null) ? null : source.getFilename();
+    }
+
+    /**
+     * Загружает платежи из файла, если список ещё не был загружен.
+     * @throws IOException если файл недоступен
+     */
+    void load() throws IOException {
+        try {
+            ensureLoaded();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
@@ -22,6 +131,7 @@ public class PaymentList {
      * @return true, если список не содержит ни одного платежа
      */
     public boolean isEmpty() {
+        if (source != null) return false;  // Источник подключается только к непустым участкам
         return head == null;
     }
 
@@ -31,61 +141,126 @@ public class PaymentList {
      * @return головной узел или null, если список пуст
      */
     public PaymentNode getHead() {
+        ensureLoaded();
         return head;
     }
 
     /**
      * Добавляет новый платёж в список, сохраняя сортировку по дате (по возрастанию).
-     * Если платеж с такой датой уже существует — он будет добавлен после всех более ранних,
-     * но до более поздних (т.е. допускаются дубликаты по дате).
+     * Если платежи с такой датой уже существуют — новый добавляется после них
+     * (допускаются дубликаты по дате, порядок добавления сохраняется).
+     * Платёж не раньше всех имеющихся дописывается в конец за O(1).
      * @param payment добавляемый платёж (не должен быть null)
      */
     public void add(Payment payment) {
+        ensureLoaded();
+
         // Создаём новый узел для платежа
         PaymentNode newNode = new PaymentNode(payment);
 
-        // Если список пуст ИЛИ новая дата раньше головы — вставляем в начало
-        if (isEmpty() || payment.getDate().isBefore(head.getData().getDate())) {
-            newNode.setNext(head);  // Новый узел указывает на старую голову
-            head = newNode;         // Новый узел становится головой
+        if (isEmpty()) {
+            head = newNode;
+            tail = newNode;
+            total = payment.getAmount();
+        } else if (!payment.getDate().isBefore(tail.getData().getDate())) {
+            // Самый поздний платёж — дописываем за последним узлом;
+            // сумма накапливается в том же порядке, что и при обходе от головы
+            tail.setNext(newNode);
+            tail = newNode;
+            total += payment.getAmount();
         } else {
-            // Иначе ищем позицию для вставки: после всех дат, строго меньших новой
+            // Ищем первый узел с датой позже новой: он и все за ним остаются на месте
             PaymentNode current = head;
-            while (current.getNext() != null &&
-                    current.getNext().getData().getDate().isBefore(payment.getDate())) {
+            while (!current.getData().getDate().isAfter(payment.getDate())) {
                 current = current.getNext();
             }
-            // Вставляем newNode между current и current.getNext()
-            newNode.setNext(current.getNext());
-            current.setNext(newNode);
+            newNode.setNext(current);
+            replacePrefix(current, newNode);
+            total = sumNodes();
         }
+        count++;
+        changed(payment, null);
     }
 
     /**
-     * Удаляет платёж по дате (удаляется первый найденный платёж с указанной датой).
-     * @param date дата платежа, который нужно удалить
-     * @return true, если платёж найден и удалён; false — если не найден
+     * Удаляет все платежи с указанной датой.
+     * Платежи одной даты идут в списке подряд, поэтому удаляются за один проход.
+     * @param date дата платежей, которые нужно удалить
+     * @return true, если хотя бы один платёж найден и удалён; false — если не найден
      */
     public boolean remove(LocalDate date) {
-        if (isEmpty()) return false;
+        ensureLoaded();
 
-        // Особый случай: удаление головы
-        if (head.getData().getDate().equals(date)) {
-            head = head.getNext();  // Голова сдвигается на следующий узел
-            return true;
+        // Ищем первый узел с этой датой; узлы до него будут скопированы
+        PaymentNode first = head;
+        while (first != null && first.getData().getDate().isBefore(date)) {
+            first = first.getNext();
+        }
+        if (first == null || !first.getData().getDate().equals(date)) {
+            return false; // Платёж с такой датой не найден
+        }
+
+        // Пропускаем все платежи этой даты; узлы после них переиспользуются
+        PaymentNode after = first;
+        int removed = 0;
+        while (after != null && after.getData().getDate().equals(date)) {
+            after = after.getNext();
+            removed++;
+        }
+        replacePrefix(first, after);
+        count -= removed;
+        total = sumNodes();
+        // Удалённые узлы не менялись, поэтому их можно обойти и после замены начала списка
+        for (PaymentNode node = first; node != after; node = node.getNext()) {
+            changed(null, node.getData());
         }
+        return true;
+    }
 
-        // Общий случай: ищем узел, ПОСЛЕ которого идёт удаляемый
+    /**
+     * Удаляет один платёж с указанными датой и суммой (первый из совпадающих).
+     * @param date   дата платежа
+     * @param amount сумма платежа
+     * @return true, если платёж найден и удалён; false — если не найден
+     */
+    public boolean remove(LocalDate date, double amount) {
+        ensureLoaded();
         PaymentNode current = head;
-        while (current.getNext() != null) {
-            if (current.getNext().getData().getDate().equals(date)) {
-                // "Перепрыгиваем" через удаляемый узел
-                current.setNext(current.getNext().getNext());
+        while (current != null && !current.getData().getDate().isAfter(date)) {
+            Payment p = current.getData();
+            if (p.getDate().equals(date) && Double.compare(p.getAmount(), amount) == 0) {
+                replacePrefix(current, current.getNext());
+                count--;
+                total = sumNodes();
+                changed(null, p);
                 return true;
             }
             current = current.getNext();
         }
-        return false; // Платёж с такой датой не найден
+        return false;
+    }
+
+    /**
+     * Заменяет узлы от головы до stop (не включая) их копиями; последняя копия ссылается на link.
+     * Исходные узлы не меняются, поэтому снимки, сделанные раньше, остаются корректными.
+     * @param stop первый узел, который не копируется
+     * @param link узел, на который ссылается последняя копия (null — копия становится последним узлом)
+     */
+    private void replacePrefix(PaymentNode stop, PaymentNode link) {
+        PaymentNode first = null, last = null;
+        for (PaymentNode node = head; node != stop; node = node.getNext()) {
+            PaymentNode copy = new PaymentNode(node.getData());
+            if (last == null) first = copy;
+            else last.setNext(copy);
+            last = copy;
+        }
+        if (last == null) {
+            head = link;
+        } else {
+            last.setNext(link);
+            head = first;
+        }
+        if (link == null) tail = last;
     }
 
     /**
@@ -94,6 +269,7 @@ public class PaymentList {
      * @return объект Payment или null, если не найден
      */
     public Payment find(LocalDate date) {
+        ensureLoaded();
         PaymentNode current = head;
         while (current != null) {
             if (current.getData().getDate().equals(date)) {
@@ -106,9 +282,18 @@ public class PaymentList {
 
     /**
      * Вычисляет общую сумму всех платежей в списке.
+     * Для ещё не загруженного списка возвращает сумму из файла, не читая платежи.
      * @return сумма платежей (в денежных единицах)
      */
     public double totalSum() {
+        if (source != null) return pendingTotal;
+        return total;  // Поддерживается при каждом изменении списка
+    }
+
+    /**
+     * Складывает суммы всех узлов от головы к концу списка.
+     */
+    private double sumNodes() {
         double sum = 0;
         PaymentNode current = head;
         while (current != null) {
@@ -123,20 +308,26 @@ public class PaymentList {
      * @return число узлов (платежей)
      */
     public int size() {
-        int count = 0;
-        PaymentNode current = head;
-        while (current != null) {
-            count++;
-            current = current.getNext();
-        }
+        ensureLoaded();
         return count;
     }
 
+    /**
+     * Возвращает неизменяемый снимок списка за O(1).
+     * Снимок ещё не загруженного списка загрузит платежи из файла при первом обходе.
+     * @return снимок платежей
+     */
+    public PaymentSnapshot snapshot() {
+        if (source != null) return new PaymentSnapshot(source, pendingTotal);
+        return new PaymentSnapshot(head, count, total);
+    }
+
     /**
      * Выводит все платежи в консоль в порядке возрастания даты (как они хранятся в списке).
      * Использует метод toString() класса Payment для форматированного вывода.
      */
     public void printAll() {
+        ensureLoaded();
         PaymentNode current = head;
         while (current != null) {
             System.out.println(current.getData()); // Автоматически вызывается Payment.toString()
@@ -1,6 +1,6 @@
 public class PaymentNode {
 
-    private Payment data;
+    private final Payment data;
     private PaymentNode next;
 
     public PaymentNode(Payment payment) {
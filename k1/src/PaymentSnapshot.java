@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Класс PaymentSnapshot — неизменяемый снимок списка платежей (см. PaymentList.snapshot).
+ * Хранит голову цепочки узлов и количество платежей на момент снимка: список дописывает
+ * новые узлы только за последним узлом, а остальные изменения делает копированием начала
+ * цепочки, поэтому первые count узлов от сохранённой головы больше не меняются.
+ * Снимок ещё не загруженного списка ссылается на участок файла и читает его при первом обходе
+ * (или берёт платежи, которые список к тому времени уже прочитал из этого участка).
+ */
+public class PaymentSnapshot implements Iterable<Payment> {
+
+    // Голова цепочки и количество узлов, принадлежащих снимку
+    private PaymentNode head;
+    private int count;
+    // Участок файла с платежами (null — платежи уже в памяти)
+    private LazyPaymentSource source;
+    // Сумма платежей
+    private final double total;
+
+    PaymentSnapshot(PaymentNode head, int count, double total) {
+        this.head = head;
+        this.count = count;
+        this.total = total;
+    }
+
+    PaymentSnapshot(LazyPaymentSource source, double knownTotal) {
+        this.source = source;
+        this.total = knownTotal;
+    }
+
+    /**
+     * Возвращает количество платежей в снимке.
+     * @return число платежей
+     */
+    public synchronized int size() {
+        ensureLoaded();
+        return count;
+    }
+
+    /**
+     * Проверяет, пуст ли снимок.
+     * @return true, если платежей нет
+     */
+    public synchronized boolean isEmpty() {
+        return source == null && count == 0;  // Источник подключается только к непустым участкам
+    }
+
+    /**
+     * Возвращает сумму платежей снимка.
+     * @return сумма платежей
+     */
+    public double totalSum() {
+        return total;
+    }
+
+    /**
+     * Возвращает итератор платежей в порядке возрастания даты.
+     * @return итератор по платежам снимка
+     */
+    @Override
+    public synchronized Iterator<Payment> iterator() {
+        ensureLoaded();
+        PaymentNode first = head;
+        int n = count;
+        return new Iterator<Payment>() {
+            private PaymentNode node = first;
+            private int left = n;
+
+            @Override
+            public boolean hasNext() {
+                return left > 0;
+            }
+
+            @Override
+            public Payment next() {
+                if (left == 0) throw new NoSuchElementException();
+                Payment p = node.getData();
+                if (--left > 0) node = node.getNext();
+                return p;
+            }
+        };
+    }
+
+    /**
+     * Читает платежи из файла, если снимок сделан до загрузки списка.
+     */
+    private void ensureLoaded() {
+        if (source == null) return;
+        PaymentSnapshot loaded = source.getLoaded();
+        if (loaded != null) {
+            // Список уже прочитал участок — берём его платежи, не обращаясь к файлу
+            head = loaded.head;
+            count = loaded.count;
+        } else {
+            PaymentList list = new PaymentList();
+            try {
+                source.loadInto(list);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось загрузить платежи из файла", e);
+            }
+            head = list.getHead();
+            count = list.size();
+        }
+        source = null;
+    }
+}
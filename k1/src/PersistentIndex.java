@@ -0,0 +1,148 @@
+import java.util.function.Consumer;
+
+/**
+ * Класс PersistentIndex — персистентный (неизменяемый, со структурным разделением) массив,
+ * индексируемый неотрицательным целым. Хранится как дерево с 32 ветвями на узел:
+ * чтение и запись занимают O(log32 n), а запись создаёт новую версию, копируя только путь
+ * от корня к изменённому листу — остальные узлы общие со старой версией.
+ *
+ * Чтобы не копировать путь на каждой записи, узлы помечаются меткой владельца (edit):
+ * узлы с текущей меткой ещё никому не выданы и меняются на месте. Владелец выдаёт версию
+ * наружу, сменив метку — после этого все узлы версии заморожены и дальше только копируются.
+ */
+final class PersistentIndex<T> {
+
+    // Разрядов индекса на уровень дерева и число ветвей узла
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * Узел дерева: ветви (на нижнем уровне — значения) и метка владельца.
+     */
+    private static final class Node {
+        final Object edit;
+        final Object[] slots;
+
+        Node(Object edit, Object[] slots) {
+            this.edit = edit;
+            this.slots = slots;
+        }
+    }
+
+    private static final PersistentIndex<Object> EMPTY =
+            new PersistentIndex<>(new Node(null, new Object[WIDTH]), 0, 0);
+
+    // Корень дерева
+    private final Node root;
+    // Сдвиг индекса для уровня корня (0 — корень является листом)
+    private final int shift;
+    // Количество непустых элементов
+    private final int size;
+
+    private PersistentIndex(Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    /**
+     * Возвращает пустой массив.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> PersistentIndex<T> empty() {
+        return (PersistentIndex<T>) EMPTY;
+    }
+
+    /**
+     * Возвращает количество непустых элементов.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает элемент по индексу.
+     * @param i индекс
+     * @return элемент или null, если ячейка пуста
+     */
+    @SuppressWarnings("unchecked")
+    T get(int i) {
+        if (i < 0 || i >= limit(shift)) return null;
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[(i >>> level) & MASK];
+            if (node == null) return null;
+        }
+        return (T) node.slots[i & MASK];
+    }
+
+    /**
+     * Возвращает версию с изменённым элементом.
+     * Узлы с меткой edit меняются на месте, остальные на пути к элементу копируются.
+     * @param i     индекс (неотрицательный)
+     * @param value новое значение (null — очистить ячейку)
+     * @param edit  метка текущего владельца
+     * @return новая версия
+     */
+    PersistentIndex<T> set(int i, T value, Object edit) {
+        T old = get(i);
+        if (old == null && value == null) return this;
+
+        // Наращиваем высоту дерева, пока индекс не поместится
+        Node top = root;
+        int s = shift;
+        while (i >= limit(s)) {
+            Object[] slots = new Object[WIDTH];
+            slots[0] = top;
+            top = new Node(edit, slots);
+            s += BITS;
+        }
+
+        Node newRoot = editable(top, edit);
+        Node node = newRoot;
+        for (int level = s; level > 0; level -= BITS) {
+            int k = (i >>> level) & MASK;
+            Node child = (Node) node.slots[k];
+            child = (child == null) ? new Node(edit, new Object[WIDTH]) : editable(child, edit);
+            node.slots[k] = child;
+            node = child;
+        }
+        node.slots[i & MASK] = value;
+
+        int newSize = size + (old == null ? 1 : 0) - (value == null ? 1 : 0);
+        return new PersistentIndex<>(newRoot, s, newSize);
+    }
+
+    /**
+     * Обходит непустые элементы в порядке возрастания индекса.
+     * @param action действие для каждого элемента
+     */
+    void forEach(Consumer<? super T> action) {
+        forEach(root, shift, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void forEach(Node node, int level, Consumer<? super T> action) {
+        for (Object slot : node.slots) {
+            if (slot == null) continue;
+            if (level == 0) action.accept((T) slot);
+            else forEach((Node) slot, level - BITS, action);
+        }
+    }
+
+    /**
+     * Возвращает узел, который можно менять владельцу edit: сам узел или его копию.
+     */
+    private static Node editable(Node node, Object edit) {
+        if (edit != null && node.edit == edit) return node;
+        return new Node(edit, node.slots.clone());
+    }
+
+    /**
+     * Граница индексов дерева с корнем на уровне shift.
+     */
+    private static long limit(int shift) {
+        return 1L << (shift + BITS);
+    }
+}
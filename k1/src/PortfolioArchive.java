@@ -0,0 +1,298 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Класс PortfolioArchive — сжатый архивный формат портфеля (файлы *.gz).
+ *
+ * Перед сжатием GZIP данные раскладываются по столбцам и кодируются компактно:
+ * фамилии записываются один раз в словарь, номера заемщиков — разностями с предыдущим,
+ * даты платежей — разностью в днях с предыдущим платежом, суммы — целым числом копеек
+ * (или исходным double, если сумма не выражается копейками). Все целые числа пишутся
+ * переменной длиной (7 бит на байт), поэтому типичный платёж занимает 3–4 байта ещё до сжатия.
+ *
+ * Структура (после распаковки GZIP):
+ * "CRGZ", версия
+ * словарь фамилий: количество, фамилии
+ * столбцы заемщиков: количество, номера, индексы фамилий, количества платежей
+ * блоки платежей по BLOCK штук: столбец дат, затем столбец сумм
+ */
+public class PortfolioArchive {
+
+    // Сигнатура и версия формата
+    private static final int MAGIC = 0x4352475A; // "CRGZ"
+    private static final int VERSION = 1;
+    // Количество платежей в одном блоке столбцов
+    private static final int BLOCK = 4096;
+    // Размер буферов ввода-вывода
+    private static final int BUFFER = 1 << 16;
+
+    private PortfolioArchive() {
+    }
+
+    /**
+     * Сохраняет очередь в сжатый архив. Записывается снимок очереди (заемщики в порядке очереди),
+     * поэтому очередь не блокируется на время сжатия. Архив пишется во временный файл
+     * и подменяет прежний переименованием (см. BorrowerQueue.saveToFile).
+     * @param queue    очередь заемщиков
+     * @param filename имя файла архива
+     * @throws IOException если произошла ошибка записи
+     */
+    public static void save(BorrowerQueue queue, String filename) throws IOException {
+        File target = new File(filename).getAbsoluteFile();
+        BorrowerSnapshot[] borrowers = queue.snapshotForOverwrite(target).inQueueOrder();
+        File tmp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tmp), BUFFER), BUFFER))) {
+                write(borrowers, out);
+            }
+            BorrowerQueue.replaceFile(tmp, target);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Загружает очередь из сжатого архива. Текущее содержимое очереди полностью заменяется.
+     * Архив сначала читается целиком, и только потом заменяется содержимое очереди:
+     * если архив обрезан или повреждён, очередь остаётся прежней.
+     * @param queue    очередь заемщиков
+     * @param filename имя файла архива
+     * @throws IOException если файл не найден или повреждён
+     */
+    public static void load(BorrowerQueue queue, String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(filename), BUFFER), BUFFER))) {
+            read(queue, in);
+        }
+    }
+
+    /**
+     * Проверяет, является ли файл сжатым GZIP (по первым двум байтам).
+     * @param filename имя файла
+     * @return true, если файл начинается с сигнатуры GZIP
+     * @throws IOException если файл недоступен
+     */
+    public static boolean isCompressed(String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    /**
+     * Записывает заемщиков в поток по столбцам.
+     */
+    private static void write(BorrowerSnapshot[] borrowers, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+
+        // Словарь фамилий: только фамилии, встречающиеся в портфеле, в порядке первого появления.
+        // Идентификаторы фамилий заемщиков снимка выданы словарём их очереди: небольшие неотрицательные числа
+        int maxNameId = -1;
+        for (BorrowerSnapshot b : borrowers) {
+            maxNameId = Math.max(maxNameId, b.getNameId());
+        }
+        int[] localIndex = new int[maxNameId + 1];
+        Arrays.fill(localIndex, -1);
+        int[] nameColumn = new int[borrowers.length];
+        String[] localNames = new String[borrowers.length];  // Фамилии по локальному индексу
+        int localCount = 0;
+        for (int i = 0; i < borrowers.length; i++) {
+            int nameId = borrowers[i].getNameId();
+            if (localIndex[nameId] < 0) {
+                localIndex[nameId] = localCount;
+                localNames[localCount++] = borrowers[i].getLastName();
+            }
+            nameColumn[i] = localIndex[nameId];
+        }
+        writeVarLong(out, localCount);
+        for (int i = 0; i < localCount; i++) {
+            out.writeUTF(localNames[i]);
+        }
+
+        // Столбцы заемщиков
+        writeVarLong(out, borrowers.length);
+        long prevId = 0;
+        for (BorrowerSnapshot b : borrowers) {
+            writeVarLong(out, zigZag(b.getId() - prevId));
+            prevId = b.getId();
+        }
+        for (int index : nameColumn) {
+            writeVarLong(out, index);
+        }
+        for (BorrowerSnapshot b : borrowers) {
+            writeVarLong(out, b.getPayments().size());
+        }
+
+        // Платежи всех заемщиков подряд, блоками: сначала даты блока, затем суммы
+        long[] days = new long[BLOCK];
+        double[] amounts = new double[BLOCK];
+        int filled = 0;
+        long prevDay = 0;
+        for (BorrowerSnapshot b : borrowers) {
+            for (Payment p : b.getPayments()) {
+                days[filled] = p.getDate().toEpochDay();
+                amounts[filled] = p.getAmount();
+                if (++filled == BLOCK) {
+                    prevDay = writeBlock(out, days, amounts, filled, prevDay);
+                    filled = 0;
+                }
+            }
+        }
+        if (filled > 0) writeBlock(out, days, amounts, filled, prevDay);
+    }
+
+    /**
+     * Записывает блок платежей: столбец разностей дат и столбец сумм.
+     * @return день последнего платежа блока (база для разностей следующего блока)
+     */
+    private static long writeBlock(DataOutputStream out, long[] days, double[] amounts, int count, long prevDay)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, zigZag(days[i] - prevDay));
+            prevDay = days[i];
+        }
+        for (int i = 0; i < count; i++) {
+            // Сумма кодируется копейками, если они точно восстанавливают её при чтении (rounded / 100.0):
+            // сравнивать amount * 100 с целым нельзя — 1.1 * 100 = 110.00000000000001
+            long rounded = Math.round(amounts[i] * 100);
+            if (rounded / 100.0 == amounts[i] && Math.abs(rounded) < (1L << 52)) {
+                writeVarLong(out, zigZag(rounded) << 1);        // Младший бит 0 — сумма в копейках
+            } else {
+                writeVarLong(out, 1);                            // Младший бит 1 — далее исходный double
+                out.writeDouble(amounts[i]);
+            }
+        }
+        return prevDay;
+    }
+
+    /**
+     * Читает заемщиков и платежи из потока в столбцы, затем заменяет ими содержимое очереди.
+     */
+    private static void read(BorrowerQueue queue, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Файл не является архивом портфеля");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Неподдерживаемая версия архива: " + version);
+
+        String[] localNames = new String[readCount(in)];
+        for (int i = 0; i < localNames.length; i++) {
+            localNames[i] = in.readUTF();
+        }
+
+        int count = readCount(in);
+        int[] ids = new int[count];
+        long prevId = 0;
+        for (int i = 0; i < count; i++) {
+            prevId += unZigZag(readVarLong(in));
+            if (prevId < 0 || prevId > Integer.MAX_VALUE) throw new IOException("Архив повреждён: неверный номер");
+            ids[i] = (int) prevId;
+        }
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            int index = readCount(in);
+            if (index >= localNames.length) throw new IOException("Архив повреждён: неверный индекс фамилии");
+            names[i] = localNames[index];
+        }
+        int[] paymentCounts = new int[count];
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            paymentCounts[i] = readCount(in);
+            remaining += paymentCounts[i];
+        }
+        if (remaining > Integer.MAX_VALUE) throw new IOException("Архив повреждён: неверное количество платежей");
+
+        // Читаем блоки платежей в общие столбцы; столбцы растут по мере чтения,
+        // поэтому повреждённое количество платежей не приводит к выделению огромных массивов
+        int total = (int) remaining;
+        long[] days = new long[Math.min(total, BLOCK)];
+        double[] amounts = new double[days.length];
+        int read = 0;
+        long prevDay = 0;
+        while (read < total) {
+            int n = Math.min(BLOCK, total - read);
+            if (read + n > days.length) {
+                int length = (int) Math.min(Math.max((long) days.length * 2, read + n), total);
+                days = Arrays.copyOf(days, length);
+                amounts = Arrays.copyOf(amounts, length);
+            }
+            for (int i = 0; i < n; i++) {
+                prevDay += unZigZag(readVarLong(in));
+                days[read + i] = prevDay;
+            }
+            for (int i = 0; i < n; i++) {
+                long v = readVarLong(in);
+                amounts[read + i] = ((v & 1) == 0) ? unZigZag(v >>> 1) / 100.0 : in.readDouble();
+            }
+            read += n;
+        }
+        for (int i = 0; i < total; i++) {
+            if (days[i] < LocalDate.MIN.toEpochDay() || days[i] > LocalDate.MAX.toEpochDay()) {
+                throw new IOException("Архив повреждён: неверная дата платежа");
+            }
+        }
+
+        // Архив прочитан целиком — заменяем содержимое очереди
+        synchronized (queue) {
+            queue.reset();
+            queue.beginBulkLoad();
+            try {
+                int next = 0;
+                for (int i = 0; i < count; i++) {
+                    Borrower b = queue.enqueueLoaded(ids[i], names[i]);  // null — заемщик не поместился в очередь
+                    for (int k = 0; k < paymentCounts[i]; k++, next++) {
+                        if (b != null) b.addPayment(new Payment(LocalDate.ofEpochDay(days[next]), amounts[next]));
+                    }
+                }
+            } finally {
+                queue.endBulkLoad();
+            }
+        }
+    }
+
+    /**
+     * Записывает неотрицательное целое переменной длиной: по 7 бит на байт, старший бит — продолжение.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Читает целое, записанное writeVarLong.
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Архив повреждён: слишком длинное число");
+    }
+
+    /**
+     * Читает количество элементов и проверяет, что оно помещается в int.
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) throw new IOException("Архив повреждён: неверное количество");
+        return (int) value;
+    }
+
+    /**
+     * Переводит знаковое число в беззнаковое так, чтобы малые по модулю значения были малыми.
+     */
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
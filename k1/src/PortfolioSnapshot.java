@@ -0,0 +1,159 @@
+import java.util.Arrays;
+
+/**
+ * Класс PortfolioSnapshot — неизменяемый снимок портфеля для чтения без блокировок:
+ * номера, фамилии и суммы платежей заемщиков, а также общий итог.
+ * Снимок строится один раз по снимку очереди, после чего его можно читать
+ * из любого числа потоков одновременно. Заемщики в снимке расположены по возрастанию номеров
+ * (порядок снимка очереди), а не в порядке очереди. Изменение одного заемщика даёт новый снимок
+ * (withTotal), прежний при этом остаётся корректным для тех, кто его ещё читает. Столбец сумм хранится
+ * в персистентном массиве (PersistentIndex), поэтому новый снимок стоит O(log n), а не копии столбца.
+ * Общий итог ведётся в целых копейках (суммы заемщиков округляются до копейки), поэтому
+ * сколько угодно обновлений withTotal не накапливают погрешность.
+ */
+public class PortfolioSnapshot {
+
+    // Столбцы заемщиков по возрастанию номеров
+    private final int[] ids;
+    private final String[] names;
+    private final PersistentIndex<Double> totals;
+    // Позиция в снимке по номеру заемщика (-1 — номер не занят)
+    private final int[] indexById;
+    // Словарь фамилий очереди, по которому выданы идентификаторы фамилий снимка
+    private final NameDictionary dictionary;
+    // Позиция первого заемщика с фамилией по её идентификатору в словаре (-1 — нет)
+    private final int[] firstByName;
+    // Позиция следующего заемщика с той же фамилией (-1 — конец цепочки)
+    private final int[] nextSameName;
+    // Сумма кредитов всех заемщиков в копейках
+    private final long totalCents;
+    // Версия очереди, состояние которой отражает снимок (см. BorrowerQueue.version)
+    private final long version;
+
+    private PortfolioSnapshot(int[] ids, String[] names, PersistentIndex<Double> totals, int[] indexById,
+                              NameDictionary dictionary, int[] firstByName, int[] nextSameName, long totalCents,
+                              long version) {
+        this.ids = ids;
+        this.names = names;
+        this.totals = totals;
+        this.indexById = indexById;
+        this.dictionary = dictionary;
+        this.firstByName = firstByName;
+        this.nextSameName = nextSameName;
+        this.totalCents = totalCents;
+        this.version = version;
+    }
+
+    /**
+     * Строит снимок очереди. Копирование идёт по снимку очереди (QueueSnapshot),
+     * поэтому очередь не блокируется; заемщики располагаются по возрастанию номеров.
+     * @param queue очередь заемщиков
+     * @return снимок
+     */
+    public static PortfolioSnapshot of(BorrowerQueue queue) {
+        QueueSnapshot snapshot = queue.snapshot();
+        BorrowerSnapshot[] borrowers = snapshot.toArray();
+        int n = borrowers.length;
+        int[] ids = new int[n];
+        String[] names = new String[n];
+        PersistentIndex<Double> totals = PersistentIndex.empty();
+        Object edit = new Object();  // Узлы столбца меняются на месте, пока снимок строится
+        int[] indexById = new int[(n == 0) ? 0 : borrowers[n - 1].getId() + 1];
+        Arrays.fill(indexById, -1);
+        int[] firstByName = new int[snapshot.names().size()];
+        Arrays.fill(firstByName, -1);
+        int[] nextSameName = new int[n];
+        long totalCents = 0;
+
+        // Обходим с конца, чтобы цепочки фамилий шли в порядке номеров
+        for (int i = n - 1; i >= 0; i--) {
+            BorrowerSnapshot b = borrowers[i];
+            ids[i] = b.getId();
+            names[i] = b.getLastName();
+            totals = totals.set(i, b.getLoanAmount(), edit);
+            totalCents += cents(b.getLoanAmount());
+            indexById[b.getId()] = i;
+            nextSameName[i] = firstByName[b.getNameId()];
+            firstByName[b.getNameId()] = i;
+        }
+        return new PortfolioSnapshot(ids, names, totals, indexById, snapshot.names(), firstByName, nextSameName,
+                totalCents, snapshot.getVersion());
+    }
+
+    /**
+     * Возвращает снимок, в котором у одного заемщика изменена сумма платежей.
+     * Копируется только путь к сумме заемщика в столбце сумм, остальное общее с текущим снимком.
+     * @param id       номер заемщика (должен присутствовать в снимке)
+     * @param newTotal новая сумма платежей заемщика
+     * @param version  версия очереди после изменения (BorrowerQueue.version)
+     * @return новый снимок
+     */
+    PortfolioSnapshot withTotal(int id, double newTotal, long version) {
+        int i = indexOf(id);
+        if (i < 0) throw new IllegalArgumentException("Заемщика №" + id + " нет в снимке");
+        long oldCents = cents(totals.get(i));
+        return new PortfolioSnapshot(ids, names, totals.set(i, newTotal, null), indexById, dictionary,
+                firstByName, nextSameName, totalCents - oldCents + cents(newTotal), version);
+    }
+
+    /**
+     * Возвращает версию очереди, состояние которой отражает снимок.
+     * @return номер версии
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Округляет сумму до целых копеек.
+     */
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Возвращает позицию заемщика в снимке.
+     * @param id номер заемщика
+     * @return позиция или -1, если заемщика нет в снимке
+     */
+    public int indexOf(int id) {
+        if (id < 0 || id >= indexById.length) return -1;
+        return indexById[id];
+    }
+
+    /**
+     * Возвращает позиции всех заемщиков с указанной фамилией по возрастанию номеров.
+     * @param lastName фамилия
+     * @return массив позиций (пустой, если не найдено)
+     */
+    public int[] indexesOf(String lastName) {
+        int nameId = dictionary.idOf(lastName);
+        if (nameId < 0 || nameId >= firstByName.length) return new int[0];
+        int count = 0;
+        for (int i = firstByName[nameId]; i >= 0; i = nextSameName[i]) count++;
+        int[] result = new int[count];
+        count = 0;
+        for (int i = firstByName[nameId]; i >= 0; i = nextSameName[i]) result[count++] = i;
+        return result;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public String getLastName(int index) {
+        return names[index];
+    }
+
+    public double getTotal(int index) {
+        return totals.get(index);
+    }
+
+    public double getTotal() {
+        return totalCents / 100.0;
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Класс QueueSnapshot — неизменяемый снимок очереди заемщиков (см. BorrowerQueue.snapshot).
+ * Снимок берётся за O(1) и разделяет структуру с очередью, поэтому отчёты и сохранение
+ * по снимку видят согласованное состояние и не блокируют тех, кто продолжает менять очередь.
+ * Заемщики в снимке хранятся по номерам; порядок очереди восстанавливает inQueueOrder.
+ */
+public class QueueSnapshot {
+
+    // Состояния заемщиков по номерам
+    private final PersistentIndex<BorrowerSnapshot> borrowers;
+    // Словарь фамилий очереди: идентификаторы фамилий заемщиков снимка (getNameId) выданы им
+    private final NameDictionary names;
+    // Версия очереди, с которой снят снимок
+    private final long version;
+
+    QueueSnapshot(PersistentIndex<BorrowerSnapshot> borrowers, NameDictionary names, long version) {
+        this.borrowers = borrowers;
+        this.names = names;
+        this.version = version;
+    }
+
+    /**
+     * Возвращает версию очереди на момент снимка: снимок актуален,
+     * пока BorrowerQueue.version() возвращает то же значение.
+     * @return номер версии
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает словарь фамилий очереди. Словарь может пополниться после снимка,
+     * но идентификаторы фамилий заемщиков снимка в нём не меняются.
+     * @return словарь фамилий
+     */
+    NameDictionary names() {
+        return names;
+    }
+
+    /**
+     * Возвращает количество заемщиков в снимке.
+     * @return число заемщиков
+     */
+    public int size() {
+        return borrowers.size();
+    }
+
+    /**
+     * Ищет заемщика по номеру.
+     * @param id номер заемщика
+     * @return состояние заемщика или null, если номер не занят
+     */
+    public BorrowerSnapshot findById(int id) {
+        return borrowers.get(id);
+    }
+
+    /**
+     * Обходит заемщиков в порядке возрастания номеров.
+     * @param action действие для каждого заемщика
+     */
+    public void forEach(Consumer<? super BorrowerSnapshot> action) {
+        borrowers.forEach(action);
+    }
+
+    /**
+     * Возвращает заемщиков снимка в порядке возрастания номеров.
+     * @return массив длины size()
+     */
+    public BorrowerSnapshot[] toArray() {
+        BorrowerSnapshot[] result = new BorrowerSnapshot[size()];
+        int[] k = {0};
+        borrowers.forEach(b -> result[k[0]++] = b);
+        return result;
+    }
+
+    /**
+     * Возвращает заемщиков снимка в порядке очереди (от начала к концу).
+     * Сортировка по ключу порядка почти линейна, когда порядок очереди близок к порядку номеров.
+     * @return массив длины size()
+     */
+    public BorrowerSnapshot[] inQueueOrder() {
+        BorrowerSnapshot[] result = toArray();
+        Arrays.sort(result, (x, y) -> Long.compare(x.getQueueOrder(), y.getQueueOrder()));
+        return result;
+    }
+
+    /**
+     * Рассчитывает общую сумму кредитов заемщиков снимка.
+     * @return сумма кредитов
+     */
+    public double totalCredits() {
+        double sum = 0;
+        for (BorrowerSnapshot b : toArray()) {
+            sum += b.getLoanAmount();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,97 @@
+import java.time.LocalDate;
+
+/**
+ * Класс RangeReport — итог платежей за период: сумма, количество платежей
+ * и количество заемщиков, у которых в этом периоде были платежи.
+ * Неизменяем; отчёты по частям портфеля объединяются методом merge.
+ */
+public class RangeReport {
+
+    // Границы периода (включительно)
+    private final LocalDate from;
+    private final LocalDate to;
+    // Сумма и количество платежей за период
+    private final double sum;
+    private final long payments;
+    // Количество заемщиков с платежами за период
+    private final int borrowers;
+
+    /**
+     * Конструктор отчёта.
+     * @param from      начало периода (включительно)
+     * @param to        конец периода (включительно)
+     * @param sum       сумма платежей
+     * @param payments  количество платежей
+     * @param borrowers количество заемщиков с платежами
+     */
+    public RangeReport(LocalDate from, LocalDate to, double sum, long payments, int borrowers) {
+        this.from = from;
+        this.to = to;
+        this.sum = sum;
+        this.payments = payments;
+        this.borrowers = borrowers;
+    }
+
+    /**
+     * Считает отчёт по снимку очереди, поэтому одновременные изменения не искажают итог.
+     * Платежи упорядочены по дате, поэтому обход списка заемщика прекращается на первой дате после периода.
+     * @param queue очередь заемщиков
+     * @param from  начало периода (включительно)
+     * @param to    конец периода (включительно)
+     * @return отчёт за период
+     */
+    public static RangeReport of(BorrowerQueue queue, LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay(), toDay = to.toEpochDay();
+        double sum = 0;
+        long payments = 0;
+        int borrowers = 0;
+        for (BorrowerSnapshot b : queue.snapshot().toArray()) {
+            boolean touched = false;
+            for (Payment p : b.getPayments()) {
+                long day = p.getDate().toEpochDay();
+                if (day > toDay) break;
+                if (day >= fromDay) {
+                    sum += p.getAmount();
+                    payments++;
+                    touched = true;
+                }
+            }
+            if (touched) borrowers++;
+        }
+        return new RangeReport(from, to, sum, payments, borrowers);
+    }
+
+    /**
+     * Объединяет два отчёта за один и тот же период по разным частям портфеля.
+     * @param other отчёт по другой части
+     * @return суммарный отчёт
+     */
+    public RangeReport merge(RangeReport other) {
+        return new RangeReport(from, to, sum + other.sum, payments + other.payments, borrowers + other.borrowers);
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getPayments() {
+        return payments;
+    }
+
+    public int getBorrowers() {
+        return borrowers;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s — %s: %.2f (%d платежей, %d заемщиков)", from, to, sum, payments, borrowers);
+    }
+}
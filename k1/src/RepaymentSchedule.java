@@ -0,0 +1,104 @@
+import java.time.LocalDate;
+
+/**
+ * Класс RepaymentSchedule — неизменяемый график погашения кредита.
+ * Хранит даты очередных взносов (в днях от 1970-01-01) и нарастающий итог суммы к оплате,
+ * поэтому сравнение с фактическими платежами не требует создания объектов.
+ * Один график может использоваться для любого числа заемщиков и потоков одновременно.
+ */
+public class RepaymentSchedule {
+
+    // Даты взносов в днях эпохи (LocalDate.toEpochDay), по возрастанию
+    private final long[] dueDays;
+    // Нарастающий итог: сколько должно быть выплачено к дате взноса с тем же индексом (включительно)
+    private final double[] cumulativeDue;
+
+    /**
+     * Конструктор графика.
+     * @param dueDays       даты взносов в днях эпохи, по возрастанию
+     * @param cumulativeDue нарастающий итог суммы к оплате
+     */
+    private RepaymentSchedule(long[] dueDays, double[] cumulativeDue) {
+        this.dueDays = dueDays;
+        this.cumulativeDue = cumulativeDue;
+    }
+
+    /**
+     * Создаёт график из равных ежемесячных взносов.
+     * @param firstDue     дата первого взноса
+     * @param installments количество взносов
+     * @param amount       сумма каждого взноса
+     * @return график погашения
+     */
+    public static RepaymentSchedule monthly(LocalDate firstDue, int installments, double amount) {
+        long[] days = new long[installments];
+        double[] cumulative = new double[installments];
+        double sum = 0;
+        for (int k = 0; k < installments; k++) {
+            days[k] = firstDue.plusMonths(k).toEpochDay();
+            sum += amount;
+            cumulative[k] = sum;
+        }
+        return new RepaymentSchedule(days, cumulative);
+    }
+
+    /**
+     * Создаёт аннуитетный график: равные ежемесячные взносы, погашающие сумму кредита с процентами.
+     * @param firstDue   дата первого взноса
+     * @param months     срок кредита в месяцах
+     * @param principal  сумма кредита
+     * @param annualRate годовая процентная ставка (например, 0.12 для 12%)
+     * @return график погашения
+     */
+    public static RepaymentSchedule annuity(LocalDate firstDue, int months, double principal, double annualRate) {
+        double r = annualRate / 12;
+        double payment = (r == 0)
+                ? principal / months
+                : principal * r / (1 - Math.pow(1 + r, -months));
+        // Округляем взнос до копеек, как в банковском графике
+        return monthly(firstDue, months, Math.round(payment * 100) / 100.0);
+    }
+
+    /**
+     * Возвращает количество взносов в графике.
+     * @return число взносов
+     */
+    public int size() {
+        return dueDays.length;
+    }
+
+    /**
+     * Возвращает дату взноса в днях эпохи.
+     * @param k номер взноса (от 0 до size-1)
+     * @return день эпохи
+     */
+    public long dueDay(int k) {
+        return dueDays[k];
+    }
+
+    /**
+     * Возвращает дату взноса.
+     * @param k номер взноса (от 0 до size-1)
+     * @return дата взноса
+     */
+    public LocalDate dueDate(int k) {
+        return LocalDate.ofEpochDay(dueDays[k]);
+    }
+
+    /**
+     * Возвращает сумму, которая должна быть выплачена к дате взноса (включительно).
+     * @param k номер взноса (от 0 до size-1)
+     * @return нарастающий итог к оплате
+     */
+    public double cumulativeDue(int k) {
+        return cumulativeDue[k];
+    }
+
+    /**
+     * Возвращает полную сумму по графику.
+     * @return сумма всех взносов
+     */
+    public double totalDue() {
+        return (cumulativeDue.length == 0) ? 0 : cumulativeDue[cumulativeDue.length - 1];
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Класс SegmentedStore — сохранение очереди заемщиков в каталог по частям (сегментам).
+ * Заемщики распределяются по сегментам по остатку от деления номера на число сегментов,
+ * каждый файл имеет формат BorrowerQueue.saveToFile, а к строке заемщика дописан его ключ порядка
+ * в очереди — по нему загрузка восстанавливает порядок очереди. Число сегментов — степень двойки
+ * не меньше MIN_SEGMENTS, при которой на сегмент приходится не больше SEGMENT_IDS номеров;
+ * когда портфель перерастает его, сохранение один раз переписывает всё с удвоенным числом сегментов.
+ * Повторное сохранение переписывает только сегменты с изменёнными заемщиками
+ * (по журналу изменений очереди), поэтому его время зависит от объёма правок, а не от размера портфеля.
+ *
+ * Новые версии сегментов пишутся в новые файлы, а список актуальных файлов хранится в манифесте,
+ * который заменяется атомарным переименованием: прерванное сохранение оставляет прежнее состояние.
+ * Журнал изменений очереди один, поэтому очередь следует сохранять по частям только в одно хранилище.
+ *
+ * Формат манифеста:
+ * [СЕГМЕНТЫ]
+ * НомерПоколения КоличествоСегментов
+ * НомерСегмента ИмяФайла
+ * ...
+ * (в манифестах прежнего формата количество сегментов не указано — их MIN_SEGMENTS)
+ */
+public class SegmentedStore {
+
+    // Наименьшее количество сегментов
+    public static final int MIN_SEGMENTS = 16;
+    // Наибольшее количество номеров заемщиков на сегмент
+    public static final int SEGMENT_IDS = 4096;
+    // Имя файла манифеста внутри каталога
+    private static final String MANIFEST = "manifest.txt";
+
+    // Каталог хранилища
+    private final File directory;
+    // Актуальный файл каждого сегмента (null — сегмент ещё не записан); длина — количество сегментов
+    private String[] segmentFiles;
+    // Номер последнего поколения файлов; растёт при каждом сохранении
+    private long generation;
+    // Очередь, для которой журнал изменений согласован с файлами на диске
+    private BorrowerQueue syncedQueue;
+
+    /**
+     * Конструктор хранилища.
+     * @param directory путь к каталогу (создаётся при первом сохранении)
+     */
+    public SegmentedStore(String directory) {
+        this.directory = new File(directory);
+        this.segmentFiles = new String[MIN_SEGMENTS];
+        this.generation = 0;
+    }
+
+    /**
+     * Возвращает путь к каталогу хранилища.
+     * @return каталог
+     */
+    public String getDirectory() {
+        return directory.getPath();
+    }
+
+    /**
+     * Сохраняет очередь в каталог. Если очередь уже сохранялась или загружалась этим хранилищем,
+     * переписываются только сегменты, затронутые изменениями; иначе — все сегменты.
+     * Очередь блокируется только на время, пока забирается журнал изменений и берётся снимок:
+     * сегменты пишутся по снимку, а изменения, сделанные во время записи, попадут в следующее сохранение.
+     * @param queue очередь для сохранения
+     * @return количество переписанных сегментов
+     * @throws IOException если произошла ошибка записи
+     */
+    public synchronized int save(BorrowerQueue queue) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + directory);
+        }
+
+        // Журнал изменений и снимок берутся под блокировкой очереди, под которой отмечаются и правки платежей
+        // (BorrowerQueue.borrowerUpdated): каждая правка попадает либо в этот снимок, либо в следующий журнал
+        int[] changes;
+        QueueSnapshot snapshot;
+        int limit;
+        synchronized (queue) {
+            changes = queue.drainChanges();  // Заемщики из журнала отмечаются сохранёнными
+            snapshot = queue.snapshot();
+            limit = queue.idLimit();
+        }
+
+        // Определяем сегменты, которые нужно переписать
+        boolean full = changes == null || queue != syncedQueue;
+        if (queue != syncedQueue) readManifest();  // Продолжаем нумерацию поколений каталога
+        String[] previous = segmentFiles.clone();
+        int segments = segmentsFor(limit);
+        if (segments > segmentFiles.length) {
+            // Портфель перерос сегменты — раскладываем его заново по большему их числу
+            segmentFiles = new String[segments];
+            full = true;
+        }
+        segments = segmentFiles.length;
+        boolean[] dirty = new boolean[segments];
+        for (int s = 0; s < segments; s++) {
+            dirty[s] = full || segmentFiles[s] == null;
+        }
+        if (!full) {
+            for (int id : changes) dirty[id % segments] = true;
+        }
+
+        syncedQueue = null;  // Если запись прервётся, следующее сохранение будет полным
+        long gen = generation + 1;
+        int written = 0;
+        for (int s = 0; s < segments; s++) {
+            if (!dirty[s]) continue;
+            String name = String.format("segment-%02d-%06d.txt", s, gen);
+            writeSegment(snapshot, limit, s, new File(directory, name));
+            segmentFiles[s] = name;
+            written++;
+        }
+
+        // Атомарно подменяем манифест — с этого момента новые сегменты становятся актуальными
+        generation = gen;
+        writeManifest();
+        syncedQueue = queue;
+
+        // Удаляем заменённые версии сегментов
+        for (int s = 0; s < previous.length; s++) {
+            if (previous[s] != null && (s >= segments || !previous[s].equals(segmentFiles[s]))) {
+                new File(directory, previous[s]).delete();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Загружает очередь из каталога. Текущее содержимое очереди полностью заменяется,
+     * заемщики располагаются в том порядке, в котором стояли в очереди при сохранении.
+     * @param queue очередь для загрузки
+     * @throws IOException если манифест или сегменты не найдены или повреждены
+     */
+    public synchronized void load(BorrowerQueue queue) throws IOException {
+        if (!readManifest()) {
+            throw new IOException("В каталоге " + directory + " нет файла " + MANIFEST);
+        }
+        synchronized (queue) {
+            syncedQueue = null;
+            queue.reset();
+            queue.beginBulkLoad();  // Индекс снимков обновляется один раз после всех сегментов
+            try {
+                for (int s = 0; s < segmentFiles.length; s++) {
+                    if (segmentFiles[s] != null) {
+                        queue.appendFromFile(new File(directory, segmentFiles[s]).getPath(), true);
+                    }
+                }
+            } finally {
+                queue.endBulkLoad();
+            }
+            queue.sortByOrder();    // Сегменты перемешивают заемщиков — восстанавливаем порядок очереди
+            queue.markAllClean();   // Загруженное состояние совпадает с файлами
+            syncedQueue = queue;
+        }
+    }
+
+    /**
+     * Возвращает количество сегментов для номеров меньше limit: наименьшую степень двойки
+     * не меньше MIN_SEGMENTS, при которой на сегмент приходится не больше SEGMENT_IDS номеров.
+     */
+    static int segmentsFor(int limit) {
+        int segments = MIN_SEGMENTS;
+        while ((long) segments * SEGMENT_IDS < limit) {
+            segments *= 2;
+        }
+        return segments;
+    }
+
+    /**
+     * Записывает один сегмент: всех заемщиков снимка, номер которых даёт остаток segment,
+     * вместе с их ключами порядка в очереди. Файл сбрасывается на диск до того, как на него сошлётся манифест.
+     */
+    private void writeSegment(QueueSnapshot snapshot, int limit, int segment, File file) throws IOException {
+        int segments = segmentFiles.length;
+        BorrowerSnapshot[] members = new BorrowerSnapshot[(limit - segment + segments - 1) / segments + 1];
+        int count = 0;
+        for (int id = segment; id < limit; id += segments) {
+            BorrowerSnapshot b = snapshot.findById(id);
+            if (b != null) members[count++] = b;
+        }
+
+        FileOutputStream out = new FileOutputStream(file);
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)))) {
+            BorrowerQueue.writeSections(writer, members, count, true);
+            writer.flush();
+            if (writer.checkError()) throw new IOException("Ошибка записи сегмента " + file);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Записывает манифест во временный файл, атомарно переименовывает его
+     * и сбрасывает на диск каталог, чтобы замена пережила сбой питания.
+     */
+    private void writeManifest() throws IOException {
+        File tmp = new File(directory, MANIFEST + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)))) {
+            writer.println("[СЕГМЕНТЫ]");
+            writer.println(generation + " " + segmentFiles.length);
+            for (int s = 0; s < segmentFiles.length; s++) {
+                if (segmentFiles[s] != null) {
+                    writer.println(s + " " + segmentFiles[s]);
+                }
+            }
+            writer.flush();
+            if (writer.checkError()) throw new IOException("Ошибка записи манифеста " + tmp);
+            out.getFD().sync();
+        }
+
+        BorrowerQueue.replaceFile(tmp, new File(directory, MANIFEST));
+        syncDirectory();
+    }
+
+    /**
+     * Сбрасывает на диск запись каталога (новое имя манифеста).
+     * Там, где каталог нельзя открыть для сброса (Windows), переименование и так записывается сразу.
+     */
+    private void syncDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Читает манифест каталога, если он есть.
+     * @return true, если манифест найден и прочитан
+     */
+    private boolean readManifest() throws IOException {
+        segmentFiles = new String[MIN_SEGMENTS];
+        generation = 0;
+
+        File file = new File(directory, MANIFEST);
+        if (!file.isFile()) return false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null || !line.trim().equals("[СЕГМЕНТЫ]")) {
+                throw new IOException("Манифест повреждён: отсутствует секция [СЕГМЕНТЫ]");
+            }
+            line = reader.readLine();
+            try {
+                String[] header = (line == null ? "" : line.trim()).split(" ");
+                generation = Long.parseLong(header[0]);
+                if (header.length > 1) {
+                    int segments = Integer.parseInt(header[1]);
+                    if (segments < 1 || segments > (1 << 24)) {
+                        throw new IOException("Манифест повреждён: неверное количество сегментов " + segments);
+                    }
+                    segmentFiles = new String[segments];
+                }
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) continue;
+                    String[] parts = line.split(" ", 2);
+                    int s = Integer.parseInt(parts[0]);
+                    if (parts.length != 2 || s < 0 || s >= segmentFiles.length) {
+                        throw new IOException("Манифест повреждён: " + line);
+                    }
+                    segmentFiles[s] = parts[1];
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Манифест повреждён: " + e.getMessage(), e);
+            }
+        }
+        return true;
+    }
+}
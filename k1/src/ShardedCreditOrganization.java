@@ -0,0 +1,364 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Класс ShardedCreditOrganization — кредитная организация, разбитая на N независимых частей (шардов).
+ * Заемщик попадает в шард по хешу фамилии, поэтому поиск по фамилии обращается только к одному шарду.
+ * Каждый шард — отдельная CreditOrganization со своей очередью; блокировкой шарда служит монитор
+ * его очереди, так что операции над разными шардами не мешают друг другу, а итоги считаются
+ * по снимкам шардов и не блокируют их.
+ * Итоги по всей организации, отчёты за период, сохранение и загрузка выполняются
+ * параллельно по всем шардам с последующим объединением результатов.
+ * Каждый шард хранится в своём файле: для имени "credits.txt" шард 2 сохраняется в "credits.2.txt",
+ * а в файле "credits.shards.txt" записываются количество шардов и схема распределения —
+ * загрузка отказывается читать файлы, сохранённые при другом разбиении.
+ *
+ * Номера заемщиков (Borrower.getId) назначаются каждым шардом независимо и в разных шардах совпадают.
+ * Номер в организации составляется из номера в шарде и номера шарда (см. idOf),
+ * по нему работают findBorrowerById и removeBorrowerById.
+ *
+ * Формат файла разбиения:
+ * [ШАРДЫ]
+ * КоличествоШардов СхемаРаспределения
+ */
+public class ShardedCreditOrganization implements AutoCloseable {
+
+    // Схема распределения заемщиков по шардам (см. shardOf); меняется вместе с алгоритмом
+    private static final String SCHEME = "lastname-hash1";
+
+    // Шарды организации
+    private final CreditOrganization[] shards;
+    // Пул потоков для параллельной обработки шардов
+    private final ExecutorService pool;
+
+    /**
+     * Конструктор организации из нескольких шардов.
+     * @param shardCount       количество шардов (не меньше 1)
+     * @param capacityPerShard максимальное количество заемщиков в одном шарде
+     */
+    public ShardedCreditOrganization(int shardCount, int capacityPerShard) {
+        this.shards = new CreditOrganization[Math.max(shardCount, 1)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new CreditOrganization(capacityPerShard);
+        }
+        int threads = Math.min(shards.length, Runtime.getRuntime().availableProcessors());
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "credit-shard");
+            t.setDaemon(true);  // Пул не должен мешать завершению программы
+            return t;
+        });
+    }
+
+    /**
+     * Возвращает количество шардов.
+     * @return число шардов
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Возвращает шард по номеру.
+     * @param index номер шарда (от 0 до getShardCount()-1)
+     * @return шард
+     */
+    public CreditOrganization getShard(int index) {
+        return shards[index];
+    }
+
+    /**
+     * Определяет номер шарда для фамилии.
+     * @param lastName фамилия заемщика
+     * @return номер шарда
+     */
+    public int shardOf(String lastName) {
+        int h = lastName.hashCode();
+        h ^= (h >>> 16);  // Перемешиваем старшие биты, чтобы похожие фамилии расходились по шардам
+        return Math.floorMod(h, shards.length);
+    }
+
+    /**
+     * Добавляет заемщика в шард, соответствующий его фамилии.
+     * @param b заемщик
+     * @return true, если заемщик добавлен; false, если шард заполнен
+     */
+    public boolean addBorrower(Borrower b) {
+        return shards[shardOf(b.getLastName())].addBorrower(b);
+    }
+
+    /**
+     * Возвращает номер заемщика в организации: номер в шарде * getShardCount() + номер шарда.
+     * @param b заемщик, находящийся в организации
+     * @return номер в организации
+     */
+    public int idOf(Borrower b) {
+        return Math.addExact(Math.multiplyExact(b.getId(), shards.length), shardOf(b.getLastName()));
+    }
+
+    /**
+     * Находит заемщика по номеру в организации (см. idOf): обращается только к одному шарду.
+     * @param id номер в организации
+     * @return заемщик или null, если номер не занят
+     */
+    public Borrower findBorrowerById(int id) {
+        if (id < 0) return null;
+        return shards[id % shards.length].findBorrowerById(id / shards.length);
+    }
+
+    /**
+     * Удаляет заемщика по номеру в организации (см. idOf).
+     * @param id номер в организации
+     * @return true, если заемщик был найден и удалён
+     */
+    public boolean removeBorrowerById(int id) {
+        if (id < 0) return false;
+        return shards[id % shards.length].removeBorrowerById(id / shards.length);
+    }
+
+    /**
+     * Находит заемщика по фамилии (если таких несколько — добавленного раньше всех).
+     * @param lastName фамилия
+     * @return заемщик или null, если не найден
+     */
+    public Borrower findBorrower(String lastName) {
+        return shards[shardOf(lastName)].findBorrower(lastName);
+    }
+
+    /**
+     * Находит всех заемщиков с указанной фамилией (все они находятся в одном шарде).
+     * @param lastName фамилия
+     * @return массив заемщиков в порядке добавления
+     */
+    public Borrower[] findBorrowersByLastName(String lastName) {
+        return shards[shardOf(lastName)].findBorrowersByLastName(lastName);
+    }
+
+    /**
+     * Удаляет заемщика по фамилии (если таких несколько — добавленного раньше всех).
+     * @param lastName фамилия
+     * @return true, если заемщик был найден и удалён
+     */
+    public boolean removeBorrower(String lastName) {
+        return shards[shardOf(lastName)].removeBorrower(lastName);
+    }
+
+    /**
+     * Возвращает общее количество заемщиков во всех шардах.
+     * @return число заемщиков
+     */
+    public int getSize() {
+        int size = 0;
+        for (CreditOrganization shard : shards) {
+            size += shard.getBorrowers().getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Рассчитывает общую сумму кредитов: шарды считаются параллельно, каждый по своему снимку.
+     * @return сумма кредитов по всей организации
+     */
+    public double totalCredits() {
+        double sum = 0;
+        for (Double part : fanOut(CreditOrganization::totalCredits)) {
+            sum += part;
+        }
+        return sum;
+    }
+
+    /**
+     * Строит отчёт о платежах за период по всей организации.
+     * @param from начало периода (включительно)
+     * @param to   конец периода (включительно)
+     * @return отчёт за период
+     */
+    public RangeReport paymentsBetween(LocalDate from, LocalDate to) {
+        RangeReport total = new RangeReport(from, to, 0, 0, 0);
+        for (RangeReport part : fanOut(shard -> RangeReport.of(shard.getBorrowers(), from, to))) {
+            total = total.merge(part);
+        }
+        return total;
+    }
+
+    /**
+     * Сохраняет все шарды параллельно, каждый в свой файл, а затем файл разбиения.
+     * @param filename базовое имя файла (номер шарда вставляется перед расширением)
+     * @throws IOException если не удалось сохранить хотя бы один шард
+     */
+    public void save(String filename) throws IOException {
+        fanOutIO(index -> shards[index].save(shardFile(filename, index)));
+
+        File target = new File(layoutFile(filename)).getAbsoluteFile();
+        File tmp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+        try {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(tmp))) {
+                writer.println("[ШАРДЫ]");
+                writer.println(shards.length + " " + SCHEME);
+                if (writer.checkError()) throw new IOException("Ошибка записи файла " + tmp);
+            }
+            BorrowerQueue.replaceFile(tmp, target);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Загружает все шарды параллельно из файлов, сохранённых методом save.
+     * Количество шардов и схема распределения должны совпадать с теми, что были при сохранении:
+     * иначе часть файлов не прочиталась бы, а фамилии искались бы не в тех шардах.
+     * Для сохранений без файла разбиения проверяется, что файлов шардов ровно getShardCount().
+     * @param filename базовое имя файла
+     * @throws IOException если разбиение не совпадает или не удалось загрузить хотя бы один шард
+     */
+    public void load(String filename) throws IOException {
+        File layout = new File(layoutFile(filename));
+        if (layout.isFile()) {
+            String[] header = readLayout(layout);
+            if (!header[1].equals(SCHEME)) {
+                throw new IOException("Шарды сохранены по неизвестной схеме распределения: " + header[1]);
+            }
+            if (Integer.parseInt(header[0]) != shards.length) {
+                throw new IOException("Сохранение разбито на " + header[0] + " шардов, а в организации их "
+                        + shards.length);
+            }
+        } else if (new File(shardFile(filename, shards.length)).exists()) {
+            throw new IOException("Сохранение разбито больше чем на " + shards.length + " шардов");
+        }
+        fanOutIO(index -> shards[index].load(shardFile(filename, index)));
+    }
+
+    /**
+     * Читает файл разбиения.
+     * @return количество шардов (строкой) и схема распределения
+     */
+    private static String[] readLayout(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null || !line.trim().equals("[ШАРДЫ]")) {
+                throw new IOException("Файл разбиения повреждён: отсутствует секция [ШАРДЫ]");
+            }
+            line = reader.readLine();
+            String[] parts = (line == null) ? new String[0] : line.trim().split(" ");
+            if (parts.length != 2 || !parts[0].matches("[0-9]{1,9}")) {
+                throw new IOException("Файл разбиения повреждён: " + line);
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * Возвращает имя файла шарда: номер вставляется перед расширением.
+     * @param filename базовое имя файла
+     * @param index    номер шарда
+     * @return имя файла шарда
+     */
+    public static String shardFile(String filename, int index) {
+        return insertPart(filename, String.valueOf(index));
+    }
+
+    /**
+     * Возвращает имя файла разбиения: "shards" вставляется перед расширением.
+     * @param filename базовое имя файла
+     * @return имя файла разбиения
+     */
+    public static String layoutFile(String filename) {
+        return insertPart(filename, "shards");
+    }
+
+    /**
+     * Вставляет часть имени перед расширением файла.
+     */
+    private static String insertPart(String filename, String part) {
+        int slash = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\'));
+        int dot = filename.lastIndexOf('.');
+        if (dot <= slash) return filename + "." + part;
+        return filename.substring(0, dot) + "." + part + filename.substring(dot);
+    }
+
+    /**
+     * Останавливает пул потоков организации.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Операция над одним шардом, возвращающая частичный результат.
+     */
+    private interface ShardTask<T> {
+        T apply(CreditOrganization shard) throws Exception;
+    }
+
+    /**
+     * Операция ввода-вывода над шардом с указанным номером.
+     */
+    private interface ShardIO {
+        void run(int index) throws IOException;
+    }
+
+    /**
+     * Выполняет операцию над всеми шардами параллельно и собирает результаты в порядке шардов.
+     */
+    private <T> List<T> fanOut(ShardTask<T> task) {
+        List<Callable<T>> calls = new ArrayList<>();
+        for (CreditOrganization shard : shards) {
+            calls.add(() -> task.apply(shard));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> f : pool.invokeAll(calls)) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Обработка шардов прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Выполняет операцию ввода-вывода над всеми шардами параллельно.
+     * Первая возникшая ошибка ввода-вывода пробрасывается после завершения всех шардов.
+     */
+    private void fanOutIO(ShardIO task) throws IOException {
+        List<Callable<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            int index = i;
+            calls.add(() -> {
+                task.run(index);
+                return null;
+            });
+        }
+        try {
+            IOException failure = null;
+            for (Future<Void> f : pool.invokeAll(calls)) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        if (failure == null) failure = (IOException) e.getCause();
+                    } else if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    } else {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Обработка шардов прервана", e);
+        }
+    }
+}
@@ -3,15 +3,35 @@ import javax.swing.event.ListSelectionEvent;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.concurrent.ExecutionException;
+import java.util.prefs.Preferences;
 
 public class SwingCreditApp {
 
-    private final CreditOrganization organization = new CreditOrganization(20);
+    // Системное свойство: вывести время запуска и завершить работу (замер и обучающий прогон AppCDS)
+    private static final String BENCHMARK_PROPERTY = "credit.startupBenchmark";
+    // Системное свойство: портфель, восстанавливаемый при замере вместо последнего открытого
+    private static final String BENCHMARK_PORTFOLIO_PROPERTY = "credit.startupPortfolio";
+    // Ключ настроек: путь к последнему открытому или сохранённому портфелю
+    private static final String LAST_PORTFOLIO_KEY = "lastPortfolio";
+
+    // Заменяется портфелем, восстановленным при запуске (только в потоке интерфейса)
+    private CreditOrganization organization = new CreditOrganization(20);
     private JFrame frame;
+    private JSplitPane splitPane;
+    // Панель платежей строится после первой отрисовки окна (см. paymentsPanel)
+    private JPanel paymentsPanel;
+    // Время первой отрисовки окна, мс (0 — окно ещё не отрисовано)
+    private long firstPaintMillis;
     private JList<String> borrowersList;
+    // Показывать заемщиков по убыванию суммы долга (иначе — в порядке очереди)
+    private JCheckBox sortByBalanceBox;
     private JList<String> paymentsList;
+    // Заемщики в том порядке, в котором они показаны в списке (позиция в JList -> заемщик)
+    private Borrower[] displayedBorrowers = new Borrower[0];
     private JTextField lastNameField;
     private JTextField dateField;
     private JTextField amountField;
@@ -22,12 +42,11 @@ public class SwingCreditApp {
     }
 
     /**
-     * Конструктор класса. Инициализирует графический интерфейс и обновляет данные.
+     * Конструктор класса. Создаёт основное окно; панель платежей, данные и восстановление
+     * последнего портфеля откладываются до первой отрисовки (см. onFirstPaint).
      */
     public SwingCreditApp() {
         initializeGUI();        // Создание и настройка элементов интерфейса
-        refreshBorrowersList(); // Загрузка списка заемщиков в интерфейс
-        updateTotalLabel();     // Отображение общей суммы кредитов
     }
 
     /**
@@ -42,7 +61,16 @@ public class SwingCreditApp {
         frame = new JFrame("Кредитная организация — Курсовой проект (Валеев А.В.)");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(1200, 500);
-        frame.setLayout(new BorderLayout());
+        frame.setContentPane(new JPanel(new BorderLayout()) {
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+                if (firstPaintMillis == 0) {
+                    firstPaintMillis = System.currentTimeMillis();
+                    SwingUtilities.invokeLater(SwingCreditApp.this::onFirstPaint);
+                }
+            }
+        });
 
         // === Верхняя панель: добавление заемщика ===
         JPanel topPanel = new JPanel(new FlowLayout());
@@ -55,7 +83,7 @@ public class SwingCreditApp {
         topPanel.add(addBorrowerBtn);
 
         // === Центр: списки ===
-        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
+        splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
         splitPane.setDividerLocation(250);
 
         // Слева: заемщики
@@ -64,11 +92,68 @@ public class SwingCreditApp {
         borrowersList = new JList<>();
         borrowersList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         leftPanel.add(new JScrollPane(borrowersList), BorderLayout.CENTER);
+        sortByBalanceBox = new JCheckBox("По сумме долга");
+        sortByBalanceBox.addActionListener(ev -> {
+            Borrower selected = getSelectedBorrower();
+            refreshBorrowersList();
+            selectBorrower(selected);
+        });
+        leftPanel.add(sortByBalanceBox, BorderLayout.NORTH);
         JButton removeBorrowerBtn = new JButton("Удалить заемщика");
         removeBorrowerBtn.addActionListener(this::removeBorrower);
         leftPanel.add(removeBorrowerBtn, BorderLayout.SOUTH);
 
-        // Справа: платежи
+        // Справа: платежи (до первой отрисовки — пустая панель с заголовком)
+        JPanel placeholder = new JPanel();
+        placeholder.setBorder(BorderFactory.createTitledBorder("Платежи"));
+
+        splitPane.setLeftComponent(leftPanel);
+        splitPane.setRightComponent(placeholder);
+
+        // === Нижняя панель: действия и итог ===
+        JPanel bottomPanel = new JPanel(new FlowLayout());
+        JButton saveBtn = new JButton("💾 Сохранить");
+        saveBtn.addActionListener(this::saveToFile);
+        JButton loadBtn = new JButton("📂 Загрузить");
+        loadBtn.addActionListener(this::loadFromFile);
+        totalLabel = new JLabel("Общая сумма кредитов: 0");
+        totalLabel.setFont(totalLabel.getFont().deriveFont(Font.BOLD, 14f));
+        bottomPanel.add(saveBtn);
+        bottomPanel.add(loadBtn);
+        bottomPanel.add(totalLabel);
+
+        // Сборка
+        frame.add(topPanel, BorderLayout.NORTH);
+        frame.add(splitPane, BorderLayout.CENTER);
+        frame.add(bottomPanel, BorderLayout.SOUTH);
+
+        // Слушатель выбора заемщика
+        borrowersList.addListSelectionListener(this::onBorrowerSelected);
+
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    /**
+     * Вызывается после первой отрисовки окна:
+     * - Строит панель платежей
+     * - Заполняет список заемщиков и общую сумму
+     * - Запускает восстановление последнего портфеля в фоне
+     */
+    private void onFirstPaint() {
+        paymentsPanel();
+        refreshBorrowersList();
+        updateTotalLabel();
+        restoreLastPortfolio();
+    }
+
+    /**
+     * Возвращает панель платежей, создавая её при первом обращении.
+     * @return панель со списком платежей и полями ввода
+     */
+    private JPanel paymentsPanel() {
+        if (paymentsPanel != null) return paymentsPanel;
+
         JPanel rightPanel = new JPanel(new BorderLayout());
         rightPanel.setBorder(BorderFactory.createTitledBorder("Платежи"));
         paymentsList = new JList<>();
@@ -90,38 +175,110 @@ public class SwingCreditApp {
         paymentInputPanel.add(removePaymentBtn);
         rightPanel.add(paymentInputPanel, BorderLayout.SOUTH);
 
-        splitPane.setLeftComponent(leftPanel);
+        int divider = splitPane.getDividerLocation();
         splitPane.setRightComponent(rightPanel);
+        splitPane.setDividerLocation(divider);
+        paymentsPanel = rightPanel;
+        return paymentsPanel;
+    }
 
-        // === Нижняя панель: действия и итог ===
-        JPanel bottomPanel = new JPanel(new FlowLayout());
-        JButton saveBtn = new JButton("💾 Сохранить");
-        saveBtn.addActionListener(this::saveToFile);
-        JButton loadBtn = new JButton("📂 Загрузить");
-        loadBtn.addActionListener(this::loadFromFile);
-        totalLabel = new JLabel("Общая сумма кредитов: 0");
-        totalLabel.setFont(totalLabel.getFont().deriveFont(Font.BOLD, 14f));
-        bottomPanel.add(saveBtn);
-        bottomPanel.add(loadBtn);
-        bottomPanel.add(totalLabel);
+    /**
+     * Восстанавливает в фоне портфель, открытый или сохранённый в прошлый раз.
+     * Восстановленный портфель подменяет текущий, только если пользователь ещё не добавил заемщиков.
+     * Если портфель не удалось прочитать, об этом сообщается, и он больше не восстанавливается.
+     * При замере запуска настройки пользователя не читаются: восстанавливается портфель
+     * из свойства credit.startupPortfolio (или никакой), чтобы замеры не зависели от прошлых сеансов.
+     */
+    private void restoreLastPortfolio() {
+        boolean benchmark = Boolean.getBoolean(BENCHMARK_PROPERTY);
+        String path = benchmark ? System.getProperty(BENCHMARK_PORTFOLIO_PROPERTY)
+                : preferences().get(LAST_PORTFOLIO_KEY, null);
+        if (path == null) {
+            finishStartup();
+            return;
+        }
+        if (!new File(path).exists()) {
+            restoreFailed(path, "файл не найден");
+            finishStartup();
+            return;
+        }
+        totalLabel.setText("Восстановление: " + new File(path).getName() + "…");
+        new SwingWorker<CreditOrganization, Void>() {
+            @Override
+            protected CreditOrganization doInBackground() throws IOException {
+                CreditOrganization restored = new CreditOrganization(20);
+                openPortfolio(restored, new File(path));
+                return restored;
+            }
 
-        // Сборка
-        frame.add(topPanel, BorderLayout.NORTH);
-        frame.add(splitPane, BorderLayout.CENTER);
-        frame.add(bottomPanel, BorderLayout.SOUTH);
+            @Override
+            protected void done() {
+                try {
+                    CreditOrganization restored = get();
+                    if (organization.getBorrowers().isEmpty()) {
+                        organization = restored;
+                        refreshBorrowersList();
+                    }
+                    updateTotalLabel();
+                } catch (InterruptedException ex) {
+                    updateTotalLabel();
+                } catch (ExecutionException ex) {
+                    updateTotalLabel();
+                    restoreFailed(path, ex.getCause().getMessage());
+                }
+                finishStartup();
+            }
+        }.execute();
+    }
 
-        // Слушатель выбора заемщика
-        borrowersList.addListSelectionListener(this::onBorrowerSelected);
+    /**
+     * Сообщает, что последний портфель не восстановлен, и забывает его,
+     * чтобы ошибка не повторялась при каждом запуске.
+     */
+    private void restoreFailed(String path, String reason) {
+        String message = "Не удалось восстановить портфель " + path + ": " + reason;
+        if (Boolean.getBoolean(BENCHMARK_PROPERTY)) {
+            System.err.println(message);  // Замер не должен останавливаться на диалоге
+            return;
+        }
+        preferences().remove(LAST_PORTFOLIO_KEY);
+        showError(message);
+    }
 
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
+    /**
+     * Завершает запуск: в режиме замера выводит время до первой отрисовки
+     * и до готовности окна (от старта JVM) и закрывает приложение.
+     */
+    private void finishStartup() {
+        if (!Boolean.getBoolean(BENCHMARK_PROPERTY)) return;
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println("До первой отрисовки: " + (firstPaintMillis - jvmStart) + " мс");
+        System.out.println("До готовности: " + (System.currentTimeMillis() - jvmStart) + " мс");
+        System.exit(0);
+    }
+
+    /**
+     * Загружает портфель в организацию: каталог — по частям, архив *.gz — целиком,
+     * текстовый файл — в ленивом режиме (платежи подгружаются при выборе заемщика).
+     */
+    private static void openPortfolio(CreditOrganization org, File file) throws IOException {
+        if (file.isDirectory()) {
+            org.loadSegmented(file.getAbsolutePath());
+        } else if (PortfolioArchive.isCompressed(file.getAbsolutePath())) {
+            org.loadCompressed(file.getAbsolutePath());
+        } else {
+            org.loadLazy(file.getAbsolutePath());
+        }
+    }
+
+    private static Preferences preferences() {
+        return Preferences.userRoot().node("credit-organization");
     }
 
     /**
      * Обработчик кнопки "Добавить заемщика":
      * - Проверяет корректность введенной фамилии
-     * - Проверяет уникальность заемщика
-     * - Добавляет нового заемщика в организацию
+     * - Добавляет нового заемщика в организацию (фамилии могут совпадать — различаются номера)
      * - Обновляет интерфейс и очищает поле ввода
      */
     private void addBorrower(ActionEvent e) {
@@ -130,11 +287,10 @@ public class SwingCreditApp {
             showError("Пожалуйста, введите фамилию заемщика!");
             return;
         }
-        if (organization.findBorrower(name) != null) {
-            showError("Заемщик с такой фамилией уже существует, пожалуйста, проверьте список!");
+        if (!organization.addBorrower(new Borrower(name))) {
+            showError("Достигнут лимит заемщиков организации!");
             return;
         }
-        organization.addBorrower(new Borrower(name));
         refreshBorrowersList();
         lastNameField.setText("");
         updateTotalLabel();
@@ -147,14 +303,14 @@ public class SwingCreditApp {
      * - Обновляет списки и очищает платежи
      */
     private void removeBorrower(ActionEvent e) {
-        String selected = borrowersList.getSelectedValue();
+        Borrower selected = getSelectedBorrower();
         if (selected == null) {
             showError("Пожалуйста, выберите заемщика для удаления");
             return;
         }
-        organization.removeBorrower(selected);
+        organization.removeBorrowerById(selected.getId());
         refreshBorrowersList();
-        paymentsList.setListData(new String[0]);
+        showPayments(new String[0]);
         updateTotalLabel();
     }
 
@@ -166,22 +322,23 @@ public class SwingCreditApp {
      * - Обновляет список платежей и общую сумму
      */
     private void addPayment(ActionEvent e) {
-        String borrower = borrowersList.getSelectedValue();
-        if (borrower == null) {
+        Borrower b = getSelectedBorrower();
+        if (b == null) {
             showError("Сначала выберите заемщика!");
             return;
         }
         try {
             LocalDate date = LocalDate.parse(dateField.getText());
             double amount = Double.parseDouble(amountField.getText());
-            Borrower b = organization.findBorrower(borrower);
-            if (b != null) {
-                b.addPayment(new Payment(date, amount));
-                loadPaymentsForBorrower(borrower);
-                dateField.setText("");
-                amountField.setText("");
-                updateTotalLabel();
+            b.addPayment(new Payment(date, amount));
+            if (sortByBalanceBox.isSelected()) {  // Долг изменился — заемщик мог сменить место в списке
+                refreshBorrowersList();
+                selectBorrower(b);
             }
+            loadPaymentsForBorrower(b);
+            dateField.setText("");
+            amountField.setText("");
+            updateTotalLabel();
         } catch (DateTimeParseException dtpe) {
             showError("Неверный формат даты! Используйте ГГГГ-ММ-ДД");
         } catch (NumberFormatException nfe) {
@@ -192,25 +349,27 @@ public class SwingCreditApp {
     /**
      * Обработчик кнопки "Удалить платёж":
      * - Проверяет выбор заемщика и платежа
-     * - Удаляет платеж по дате из истории заемщика
+     * - Удаляет выбранный платеж (по дате и сумме) из истории заемщика
      * - Обновляет интерфейс и пересчитывает итоги
      */
     private void removePayment(ActionEvent e) {
-        String borrower = borrowersList.getSelectedValue();
+        Borrower b = getSelectedBorrower();
         String paymentStr = paymentsList.getSelectedValue();
-        if (borrower == null || paymentStr == null) {
+        if (b == null || paymentStr == null) {
             showError("Пожалуйста, выберите платёж для удаления!");
             return;
         }
         try {
-            String datePart = paymentStr.split(":")[0].trim();
-            LocalDate date = LocalDate.parse(datePart);
-            Borrower b = organization.findBorrower(borrower);
-            if (b != null) {
-                b.removePayment(date);
-                loadPaymentsForBorrower(borrower);
-                updateTotalLabel();
+            String[] parts = paymentStr.split(":");
+            LocalDate date = LocalDate.parse(parts[0].trim());
+            double amount = Double.parseDouble(parts[1].trim());
+            b.removePayment(date, amount);
+            if (sortByBalanceBox.isSelected()) {
+                refreshBorrowersList();
+                selectBorrower(b);
             }
+            loadPaymentsForBorrower(b);
+            updateTotalLabel();
         } catch (Exception ex) {
             showError("Ошибка при удалении платежа");
         }
@@ -218,17 +377,29 @@ public class SwingCreditApp {
 
     /**
      * Обработчик кнопки "Сохранить":
-     * - Открывает диалог выбора файла
-     * - Сохраняет данные организации в текстовый файл
+     * - Открывает диалог выбора файла или каталога
+     * - Сохраняет данные организации в текстовый файл, в сжатый архив (имя *.gz),
+     *   а при выборе каталога — по частям, переписывая только изменённые части
      * - Отображает результат операции
      */
     private void saveToFile(ActionEvent e) {
         JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         chooser.setSelectedFile(new File("credits.txt")); // .txt вместо .dat
         if (chooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
             try {
-                organization.save(chooser.getSelectedFile().getAbsolutePath());
-                JOptionPane.showMessageDialog(frame, "✅ Сохранено!", "Успех", JOptionPane.INFORMATION_MESSAGE);
+                File selected = chooser.getSelectedFile();
+                String message = "✅ Сохранено!";
+                if (selected.isDirectory()) {
+                    int written = organization.saveSegmented(selected.getAbsolutePath());
+                    message = "✅ Сохранено! Переписано частей: " + written;
+                } else if (selected.getName().endsWith(".gz")) {
+                    organization.saveCompressed(selected.getAbsolutePath());
+                } else {
+                    organization.save(selected.getAbsolutePath());
+                }
+                preferences().put(LAST_PORTFOLIO_KEY, selected.getAbsolutePath());
+                JOptionPane.showMessageDialog(frame, message, "Успех", JOptionPane.INFORMATION_MESSAGE);
             } catch (IOException ex) {
                 showError("Ошибка сохранения: " + ex.getMessage());
             }
@@ -237,17 +408,21 @@ public class SwingCreditApp {
 
     /**
      * Обработчик кнопки "Загрузить":
-     * - Открывает диалог выбора файла
-     * - Загружает данные организации из файла
+     * - Открывает диалог выбора файла или каталога
+     * - Загружает заемщиков из файла (платежи подгружаются при выборе заемщика),
+     *   из сжатого архива или из каталога, сохранённого по частям
      * - Полностью обновляет интерфейс
      */
     private void loadFromFile(ActionEvent e) {
         JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
             try {
-                organization.load(chooser.getSelectedFile().getAbsolutePath());
+                File selected = chooser.getSelectedFile();
+                openPortfolio(organization, selected);
+                preferences().put(LAST_PORTFOLIO_KEY, selected.getAbsolutePath());
                 refreshBorrowersList();
-                paymentsList.setListData(new String[0]);
+                showPayments(new String[0]);
                 updateTotalLabel();
                 JOptionPane.showMessageDialog(frame, "✅ Загружено!", "Успех", JOptionPane.INFORMATION_MESSAGE);
             } catch (IOException ex) {
@@ -264,7 +439,7 @@ public class SwingCreditApp {
      */
     private void onBorrowerSelected(ListSelectionEvent e) {
         if (!e.getValueIsAdjusting()) {
-            String selected = borrowersList.getSelectedValue();
+            Borrower selected = getSelectedBorrower();
             if (selected != null) {
                 loadPaymentsForBorrower(selected);
             }
@@ -273,32 +448,64 @@ public class SwingCreditApp {
 
     /**
      * Обновляет список заемщиков в интерфейсе:
-     * - Получает актуальный список из организации
-     * - Формирует массив строк для отображения
+     * - Получает актуальный список из организации (в порядке очереди или по убыванию долга)
+     * - Формирует массив строк для отображения (фамилия и номер заемщика, при сортировке — и долг)
      * - Обновляет JList заемщиков
      */
     private void refreshBorrowersList() {
         BorrowerQueue queue = organization.getBorrowers();
-        int size = queue.getSize();
-        String[] names = new String[size];
-        for (int i = 0; i < size; i++) {
-            Borrower b = queue.getAt(i);
-            names[i] = (b != null) ? b.getLastName() : "";
+        boolean byBalance = sortByBalanceBox.isSelected();
+        Borrower[] shown = byBalance ? queue.sortedByBalance() : queue.toArray();
+        String[] names = new String[shown.length];
+        for (int i = 0; i < shown.length; i++) {
+            Borrower b = shown[i];
+            names[i] = b.getLastName() + " (№" + b.getId() + ")"
+                    + (byBalance ? ": " + b.getLoanAmount() : "");
         }
+        displayedBorrowers = shown;
         borrowersList.setListData(names);
     }
 
+    /**
+     * Выделяет заемщика в списке (если он там показан).
+     * @param b заемщик или null
+     */
+    private void selectBorrower(Borrower b) {
+        for (int i = 0; b != null && i < displayedBorrowers.length; i++) {
+            if (displayedBorrowers[i] == b) {
+                borrowersList.setSelectedIndex(i);
+                borrowersList.ensureIndexIsVisible(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Возвращает заемщика, выбранного в списке.
+     * Выбор определяется по позиции, т.к. фамилии заемщиков могут совпадать.
+     * @return выбранный заемщик или null, если ничего не выбрано
+     */
+    private Borrower getSelectedBorrower() {
+        int index = borrowersList.getSelectedIndex();
+        if (index < 0 || index >= displayedBorrowers.length) return null;
+        return displayedBorrowers[index];
+    }
+
     /**
      * Загружает платежи выбранного заемщика:
-     * - Находит заемщика по фамилии
      * - Формирует строки для отображения платежей (дата: сумма)
      * - Обновляет JList платежей
      */
-    private void loadPaymentsForBorrower(String name) {
-        Borrower b = organization.findBorrower(name);
+    private void loadPaymentsForBorrower(Borrower b) {
         if (b != null) {
             PaymentList list = b.getPayments();
-            int count = list.size();
+            int count;
+            try {
+                count = list.size(); // При первом обращении платежи читаются из файла
+            } catch (UncheckedIOException ex) {
+                showError("Ошибка загрузки платежей: " + ex.getCause().getMessage());
+                return;
+            }
             String[] paymentStrings = new String[count];
             PaymentNode current = list.getHead();
             int i = 0;
@@ -308,10 +515,18 @@ public class SwingCreditApp {
                 current = current.getNext();
                 i++;
             }
-            paymentsList.setListData(paymentStrings);
+            showPayments(paymentStrings);
         }
     }
 
+    /**
+     * Показывает строки платежей (панель платежей создаётся, если её ещё нет).
+     */
+    private void showPayments(String[] rows) {
+        paymentsPanel();
+        paymentsList.setListData(rows);
+    }
+
     /**
      * Обновляет метку общей суммы кредитов:
      * - Получает актуальную сумму из организации
@@ -0,0 +1,71 @@
+#!/bin/sh
+# Сборка архива классов (AppCDS) и замер времени запуска.
+# Использование: ./startup-cds.sh [число прогонов] [файл портфеля]
+# Архив создаётся по обучающему прогону: GUI (если есть дисплей) или консольного Main.
+# GUI при замере не читает настройки пользователя и восстанавливает только указанный портфель.
+set -e
+
+RUNS=${1:-5}
+HERE=$(cd "$(dirname "$0")" && pwd)
+OUT="$HERE/out"
+JAR="$OUT/k1.jar"
+JAVA_OPTS="-Dfile.encoding=UTF-8"
+
+rm -rf "$OUT/classes"
+mkdir -p "$OUT/classes"
+javac -encoding UTF-8 -d "$OUT/classes" "$HERE"/src/*.java
+# AppCDS архивирует только классы, загруженные из jar
+jar --create --file "$JAR" -C "$OUT/classes" .
+
+if [ -n "$DISPLAY" ] || [ "$(uname)" = Darwin ]; then
+    MAIN_CLASS=SwingCreditApp
+    APP_OPTS="-Dcredit.startupBenchmark=true"
+    if [ -n "$2" ]; then
+        APP_OPTS="$APP_OPTS -Dcredit.startupPortfolio=$(cd "$(dirname "$2")" && pwd)/$(basename "$2")"
+    fi
+else
+    MAIN_CLASS=Main
+    APP_OPTS=""
+fi
+ARCHIVE="$OUT/$MAIN_CLASS.jsa"
+
+# Main пишет файлы портфелей в текущий каталог — прогоняем во временном
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+cd "$WORK"
+
+java $JAVA_OPTS -XX:ArchiveClassesAtExit="$ARCHIVE" $APP_OPTS -cp "$JAR" $MAIN_CLASS > /dev/null
+
+# Время одного прогона, мс: для GUI — до первой отрисовки (выводит само приложение),
+# для Main — полное время работы
+measure() {
+    if [ $MAIN_CLASS = SwingCreditApp ]; then
+        java $JAVA_OPTS "$@" $APP_OPTS -cp "$JAR" $MAIN_CLASS | sed -n 's/^До первой отрисовки: \([0-9]*\) мс$/\1/p'
+    else
+        start=$(date +%s%N)
+        java $JAVA_OPTS "$@" -cp "$JAR" $MAIN_CLASS > /dev/null
+        echo $(( ($(date +%s%N) - start) / 1000000 ))
+    fi
+}
+
+report() {
+    label=$1
+    shift
+    total=0
+    i=0
+    while [ $i -lt "$RUNS" ]; do
+        ms=$(measure "$@")
+        total=$((total + ms))
+        i=$((i + 1))
+    done
+    echo "$label: $((total / RUNS)) мс (среднее за $RUNS прогонов)"
+}
+
+if [ $MAIN_CLASS = SwingCreditApp ]; then
+    echo "$MAIN_CLASS, время до первой отрисовки:"
+else
+    echo "$MAIN_CLASS (нет дисплея), полное время работы:"
+fi
+report "  без архива"
+report "  с архивом " -XX:SharedArchiveFile="$ARCHIVE"
+echo "Запуск с архивом: java -XX:SharedArchiveFile=$ARCHIVE -cp $JAR $MAIN_CLASS"